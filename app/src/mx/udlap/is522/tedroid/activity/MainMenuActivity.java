@@ -38,6 +38,7 @@ import com.google.android.gms.games.Player;
 import mx.udlap.is522.tedroid.R;
 import mx.udlap.is522.tedroid.util.Strings;
 import mx.udlap.is522.tedroid.util.Typefaces;
+import mx.udlap.is522.tedroid.view.SoundBank;
 
 /**
  * Actividad que presenta el menu principal del juego.
@@ -69,6 +70,8 @@ public class MainMenuActivity extends BaseGoogleGamesActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        // Los sonidos del juego se cargan en su hilo mientras el jugador esta en el menu
+        SoundBank.preload(this);
         setContentView(R.layout.activity_mainmenu);
         initViews();
         setUpSignInButton();
@@ -127,6 +130,7 @@ public class MainMenuActivity extends BaseGoogleGamesActivity {
     public void finish() {
         super.finish();
         stopPlayback();
+        SoundBank.release();
     }
 
     /** Inicializa las vistas */
@@ -38,8 +38,8 @@ import mx.udlap.is522.tedroid.fragment.InstructionsFragment;
 import mx.udlap.is522.tedroid.util.Typefaces;
 import mx.udlap.is522.tedroid.view.GameBoardView;
 import mx.udlap.is522.tedroid.view.NextTetrominoView;
+import mx.udlap.is522.tedroid.view.Shape;
 import mx.udlap.is522.tedroid.view.SpecialGameBoardView;
-import mx.udlap.is522.tedroid.view.Tetromino;
 
 /**
  * Actividad principal del juego donde se puede jugar realmente.
@@ -53,6 +53,7 @@ public class SpecialGameActivity extends BaseGoogleGamesActivity {
     private int totalScore;
     private int level;
     private NextTetrominoView nextTetrominoView;
+    private Shape[] upcomingShapes;
     private SpecialGameBoardView gameBoardView;
     private TextView gameOverTextView;
     private TextView scoreTextView;
@@ -171,11 +172,15 @@ public class SpecialGameActivity extends BaseGoogleGamesActivity {
 
     /** Inicializa el tablero de juego */
     private void setUpGameBoardView() {
+        int previewSize = getPreviewSize();
+        upcomingShapes = new Shape[previewSize];
+        gameBoardView.setPreviewSize(previewSize);
+        nextTetrominoView.setPreviewSize(previewSize);
         gameBoardView.setOnCommingNextTetrominoListener(new GameBoardView.OnCommingNextTetrominoListener() {
 
             @Override
-            public void onCommingNextTetromino(Tetromino nextTetromino) {
-                nextTetrominoView.setTetromino(nextTetromino);
+            public void onCommingNextTetromino(Shape nextShape) {
+                nextTetrominoView.setUpcomingShapes(upcomingShapes, gameBoardView.getUpcomingShapes(upcomingShapes));
             }
         });
         gameBoardView.setOnPointsAwardedListener(new GameBoardView.OnPointsAwardedListener() {
@@ -397,6 +402,12 @@ public class SpecialGameActivity extends BaseGoogleGamesActivity {
         totalLines = 0;
     }
 
+    /** @return cuántos tetrominos siguientes se muestran según la configuración. */
+    private int getPreviewSize() {
+        return Integer.parseInt(PreferenceManager.getDefaultSharedPreferences(this)
+            .getString(getString(R.string.preview_size_key), getString(R.string.default_preview_size_value)));
+    }
+
     /** @return si la musica esta habilitada o no. */
     private boolean isMusicEnabled() {
         return PreferenceManager.getDefaultSharedPreferences(this)
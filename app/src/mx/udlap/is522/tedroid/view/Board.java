@@ -0,0 +1,370 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+import java.util.Arrays;
+
+/**
+ * Matriz del tablero donde se acumulan los tetrominos. Además del índice de {@link ColorIndex} de
+ * cada celda mantiene un mapa de bits por fila (bit n = columna n ocupada) para que las pruebas
+ * de colisión sean unas cuantas operaciones AND y corrimientos en lugar de recorrer celda por
+ * celda, y la fila más alta ocupada de cada columna para calcular en un paso dónde cae una
+ * figura.
+ *
+ * @author Daniel Pedraza-Arcega
+ * @since 1.3
+ */
+public class Board {
+
+    private final int rows;
+    private final int columns;
+    private final byte[] cells;
+    private final int[] rowMasks;
+    private final int fullRowMask;
+    private final int[] columnTops;
+    private int dirtyTopRow;
+    private int dirtyBottomRow;
+
+    /**
+     * Construye un tablero vacío.
+     *
+     * @param rows el número de filas.
+     * @param columns el número de columnas.
+     * @throws IllegalArgumentException si las columnas no caben en una máscara de bits.
+     */
+    public Board(int rows, int columns) {
+        if (columns >= Integer.SIZE) throw new IllegalArgumentException("Too many columns: " + columns);
+        this.rows = rows;
+        this.columns = columns;
+        this.cells = new byte[rows * columns];
+        this.rowMasks = new int[rows];
+        this.fullRowMask = (1 << columns) - 1;
+        this.columnTops = new int[columns];
+        Arrays.fill(columnTops, rows);
+        dirtyTopRow = 0;
+        dirtyBottomRow = rows - 1;
+    }
+
+    /**
+     * Construye un tablero a partir de una matriz de android.R.color.transparent y R.color.ids.
+     *
+     * @param colorMatrix la matriz del tablero.
+     * @throws IllegalArgumentException si las columnas no caben en una máscara de bits.
+     */
+    Board(int[][] colorMatrix) {
+        this(colorMatrix.length, colorMatrix[0].length);
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) set(row, column, ColorIndex.indexOf(colorMatrix[row][column]));
+        }
+    }
+
+    /**
+     * @param shapeMatrix una matriz de android.R.color.transparent y R.color.ids.
+     * @return una máscara de bits por fila donde el bit n indica que la columna n no es
+     *         transparente.
+     */
+    static int[] rowMasksOf(int[][] shapeMatrix) {
+        int[] masks = new int[shapeMatrix.length];
+        for (int row = 0; row < shapeMatrix.length; row++) {
+            for (int column = 0; column < shapeMatrix[row].length; column++) {
+                if (shapeMatrix[row][column] != android.R.color.transparent) masks[row] |= 1 << column;
+            }
+        }
+
+        return masks;
+    }
+
+    /**
+     * Revisa si una figura cabe en el tablero en la posición dada.
+     *
+     * @param shapeRowMasks las máscaras por fila de la figura.
+     * @param shapeColumns el ancho de la figura.
+     * @param row la fila donde estaría la esquina superior izquierda de la figura.
+     * @param column la columna donde estaría la esquina superior izquierda de la figura.
+     * @return si cabe o no sin salirse del tablero ni traslaparse con otras piezas.
+     */
+    boolean canFit(int[] shapeRowMasks, int shapeColumns, int row, int column) {
+        if (row < 0 || row + shapeRowMasks.length > rowMasks.length) return false;
+        if (column < 0 || column + shapeColumns > columns) return false;
+        for (int shapeRow = 0; shapeRow < shapeRowMasks.length; shapeRow++) {
+            if ((rowMasks[row + shapeRow] & (shapeRowMasks[shapeRow] << column)) != 0) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Calcula cuántas filas puede caer una figura usando la fila más alta ocupada de cada columna
+     * y la fila más baja de la figura en cada una de sus columnas.
+     *
+     * @param shapeBottomProfile por cada columna de la figura, su fila más baja ocupada o -1.
+     * @param row la fila donde esta la esquina superior izquierda de la figura.
+     * @param column la columna donde esta la esquina superior izquierda de la figura.
+     * @return cuántas filas puede caer o -1 si la figura esta debajo de alguna celda ocupada y
+     *         hay que buscar fila por fila.
+     */
+    int dropDistance(int[] shapeBottomProfile, int row, int column) {
+        int distance = Integer.MAX_VALUE;
+        for (int shapeColumn = 0; shapeColumn < shapeBottomProfile.length; shapeColumn++) {
+            if (shapeBottomProfile[shapeColumn] != -1) {
+                int columnDistance = columnTops[column + shapeColumn] - 1 - (row + shapeBottomProfile[shapeColumn]);
+                if (columnDistance < distance) distance = columnDistance;
+            }
+        }
+
+        return distance == Integer.MAX_VALUE || distance < 0 ? -1 : distance;
+    }
+
+    /**
+     * Cambia el color de una celda del tablero.
+     *
+     * @param row la fila.
+     * @param column la columna.
+     * @param color el índice de {@link ColorIndex} del color o {@link ColorIndex#EMPTY}.
+     */
+    void set(int row, int column, int color) {
+        cells[row * columns + column] = (byte) color;
+        markDirty(row, row);
+        if (color == ColorIndex.EMPTY) {
+            rowMasks[row] &= ~(1 << column);
+            if (columnTops[column] == row) columnTops[column] = findColumnTop(column, row);
+        } else {
+            rowMasks[row] |= 1 << column;
+            if (row < columnTops[column]) columnTops[column] = row;
+        }
+    }
+
+    /**
+     * Deja una figura en el tablero. Las máscaras de las filas se actualizan con un OR por fila.
+     *
+     * @param shapeMatrix la forma en una matriz de índices de {@link ColorIndex}.
+     * @param shapeRowMasks las máscaras por fila de la figura.
+     * @param row la fila donde queda la esquina superior izquierda de la figura.
+     * @param column la columna donde queda la esquina superior izquierda de la figura.
+     */
+    void place(int[][] shapeMatrix, int[] shapeRowMasks, int row, int column) {
+        for (int shapeRow = 0; shapeRow < shapeMatrix.length; shapeRow++) {
+            for (int shapeColumn = 0; shapeColumn < shapeMatrix[shapeRow].length; shapeColumn++) {
+                int color = shapeMatrix[shapeRow][shapeColumn];
+                if (color != ColorIndex.EMPTY) {
+                    cells[(row + shapeRow) * columns + column + shapeColumn] = (byte) color;
+                    if (row + shapeRow < columnTops[column + shapeColumn]) columnTops[column + shapeColumn] = row + shapeRow;
+                }
+            }
+            rowMasks[row + shapeRow] |= shapeRowMasks[shapeRow] << column;
+        }
+        markDirty(row, row + shapeMatrix.length - 1);
+    }
+
+    /**
+     * @param row la fila.
+     * @return cuántas celdas ocupadas tiene la fila.
+     */
+    int getFilledCells(int row) {
+        return Integer.bitCount(rowMasks[row]);
+    }
+
+    /** Vacía todas las celdas del tablero. */
+    void clear() {
+        Arrays.fill(cells, (byte) ColorIndex.EMPTY);
+        Arrays.fill(rowMasks, 0);
+        Arrays.fill(columnTops, rows);
+        markDirty(0, rows - 1);
+    }
+
+    /**
+     * Busca las filas completas entre dos filas. El mapa de bits de cada fila ya lleva la cuenta
+     * de sus celdas ocupadas, así que solo se revisan las filas dadas.
+     *
+     * @param fromRow la primera fila a revisar.
+     * @param toRow la última fila a revisar (a lo más {@link Integer#SIZE} filas después).
+     * @return una máscara de bits donde el bit n indica que la fila fromRow + n esta completa.
+     */
+    int findCompletedRows(int fromRow, int toRow) {
+        int top = Math.max(fromRow, 0);
+        int bottom = Math.min(toRow, rows - 1);
+        int completedRows = 0;
+        for (int row = top; row <= bottom; row++) {
+            if (rowMasks[row] == fullRowMask) completedRows |= 1 << (row - fromRow);
+        }
+
+        return completedRows;
+    }
+
+    /**
+     * Borra filas y baja las filas de arriba en una sola pasada. Las filas se recorren de abajo
+     * hacia arriba y cada fila que queda se copia una sola vez a su nuevo lugar; al final se
+     * vacían de un golpe las filas de hasta arriba.
+     *
+     * @param fromRow la fila que corresponde al bit 0 de la máscara.
+     * @param rowsToClear una máscara de bits donde el bit n indica que se borra la fila
+     *        fromRow + n, como la que regresa {@link #findCompletedRows(int, int)}.
+     * @return cuántas filas se borraron.
+     */
+    int clearRows(int fromRow, int rowsToClear) {
+        if (rowsToClear == 0) return 0;
+        int bottom = fromRow + Integer.SIZE - 1 - Integer.numberOfLeadingZeros(rowsToClear);
+        int cleared = 0;
+        int writeRow = bottom;
+        for (int readRow = bottom; readRow >= 0; readRow--) {
+            if (readRow >= fromRow && (rowsToClear & (1 << (readRow - fromRow))) != 0) cleared++;
+            else {
+                if (writeRow != readRow) {
+                    System.arraycopy(cells, readRow * columns, cells, writeRow * columns, columns);
+                    rowMasks[writeRow] = rowMasks[readRow];
+                }
+                writeRow--;
+            }
+        }
+
+        Arrays.fill(cells, 0, cleared * columns, (byte) ColorIndex.EMPTY);
+        Arrays.fill(rowMasks, 0, cleared, 0);
+
+        // Las celdas solo bajan, así que la nueva cima de cada columna esta en su cima anterior o abajo
+        for (int column = 0; column < columnTops.length; column++) columnTops[column] = findColumnTop(column, columnTops[column]);
+        markDirty(0, bottom);
+        return cleared;
+    }
+
+    /**
+     * @param column la columna.
+     * @param fromRow la fila desde donde buscar hacia abajo.
+     * @return la primera fila ocupada de la columna a partir de fromRow o el número de filas si no
+     *         hay ninguna.
+     */
+    private int findColumnTop(int column, int fromRow) {
+        int row = fromRow;
+        while (row < rows && (rowMasks[row] & (1 << column)) == 0) row++;
+        return row;
+    }
+
+    /**
+     * @param column la columna.
+     * @return la fila más alta ocupada de la columna o el número de filas si esta vacía.
+     */
+    int getColumnTop(int column) {
+        return columnTops[column];
+    }
+
+    /**
+     * @param row la fila.
+     * @param column la columna.
+     * @return el índice de {@link ColorIndex} del color de la celda o {@link ColorIndex#EMPTY}.
+     */
+    public int get(int row, int column) {
+        return cells[row * columns + column];
+    }
+
+    /**
+     * @param row la fila.
+     * @param column la columna.
+     * @return si la celda esta vacía o no.
+     */
+    public boolean isEmpty(int row, int column) {
+        return (rowMasks[row] & (1 << column)) == 0;
+    }
+
+    /** @return el número de filas. */
+    public int getRows() {
+        return rows;
+    }
+
+    /** @return el número de columnas. */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return las celdas fila por fila, cada una con su índice de {@link ColorIndex} o
+     *         {@link ColorIndex#EMPTY}; no deben modificarse.
+     */
+    byte[] getCells() {
+        return cells;
+    }
+
+    /**
+     * Copia todas las celdas de otro tablero del mismo tamaño.
+     *
+     * @param board el tablero a copiar.
+     * @throws IllegalArgumentException si los tableros son de distinto tamaño.
+     */
+    void copyFrom(Board board) {
+        if (board.rows != rows || board.columns != columns) throw new IllegalArgumentException("Boards must be the same size");
+        System.arraycopy(board.cells, 0, cells, 0, cells.length);
+        System.arraycopy(board.rowMasks, 0, rowMasks, 0, rowMasks.length);
+        System.arraycopy(board.columnTops, 0, columnTops, 0, columnTops.length);
+        markDirty(0, rows - 1);
+    }
+
+    /**
+     * Agrega filas al rango de filas que cambiaron desde la última vez que se dibujaron.
+     *
+     * @param fromRow la primera fila que cambió.
+     * @param toRow la última fila que cambió.
+     */
+    private void markDirty(int fromRow, int toRow) {
+        if (dirtyTopRow > dirtyBottomRow) {
+            dirtyTopRow = fromRow;
+            dirtyBottomRow = toRow;
+        } else {
+            if (fromRow < dirtyTopRow) dirtyTopRow = fromRow;
+            if (toRow > dirtyBottomRow) dirtyBottomRow = toRow;
+        }
+    }
+
+    /** @return si alguna celda cambió desde la última llamada a {@link #clearDirtyRows()}. */
+    boolean hasDirtyRows() {
+        return dirtyTopRow <= dirtyBottomRow;
+    }
+
+    /** @return la primera fila que cambió desde la última llamada a {@link #clearDirtyRows()}. */
+    int getDirtyTopRow() {
+        return dirtyTopRow;
+    }
+
+    /** @return la última fila que cambió desde la última llamada a {@link #clearDirtyRows()}. */
+    int getDirtyBottomRow() {
+        return dirtyBottomRow;
+    }
+
+    /** Marca todas las filas como ya dibujadas. */
+    void clearDirtyRows() {
+        dirtyTopRow = rows;
+        dirtyBottomRow = -1;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + columns;
+        result = prime * result + Arrays.hashCode(cells);
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null) return false;
+        if (getClass() != obj.getClass()) return false;
+        Board other = (Board) obj;
+        if (columns != other.columns) return false;
+        if (!Arrays.equals(cells, other.cells)) return false;
+        return true;
+    }
+}
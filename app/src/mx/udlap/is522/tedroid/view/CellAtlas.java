@@ -0,0 +1,184 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * Bitmap con una celda ya dibujada, relleno y borde, por cada color de la {@link Palette} al
+ * tamaño de celda actual, más una fila con las celdas transparentes de la sombra. Dibujar una
+ * celda es copiar su pedazo del Bitmap con el mismo Paint, en lugar de cambiar el color del Paint
+ * y dibujar dos rectángulos. Igual que esos rectángulos, el borde de cada celda cae en la línea de
+ * sus lados, así que cada celda con borde mide un pixel más que la celda y lo comparte con la
+ * siguiente.
+ *
+ * @author Daniel Pedraza-Arcega
+ * @since 1.3
+ */
+final class CellAtlas {
+
+    /** Transparencia de las celdas de la sombra del tetromino. */
+    static final int GHOST_ALPHA = 0x40;
+
+    private static final int SOLID_ROW = 0;
+    private static final int GHOST_ROW = 1;
+
+    private final Palette palette;
+    private final Paint foreground;
+    private final Paint border;
+    private final Rect source;
+    private final RectF destination;
+    private Bitmap atlas;
+    private int cellWidth;
+    private int cellHeight;
+    private int colors;
+
+    /**
+     * Construye un atlas sin celdas; hasta que se le da un tamaño dibuja con rectángulos.
+     *
+     * @param palette los colores ya resueltos de las celdas.
+     * @param borderColor el color ARGB del borde de las celdas.
+     */
+    CellAtlas(Palette palette, int borderColor) {
+        this.palette = palette;
+        foreground = new Paint();
+        foreground.setStyle(Paint.Style.FILL); // El color se toma de la paleta
+        border = new Paint();
+        border.setStyle(Paint.Style.STROKE);
+        border.setColor(borderColor);
+        source = new Rect();
+        destination = new RectF();
+    }
+
+    /**
+     * Vuelve a dibujar las celdas al tamaño dado si cambió.
+     *
+     * @param width el ancho de una celda.
+     * @param height el alto de una celda.
+     */
+    void setCellSize(float width, float height) {
+        int newCellWidth = (int) Math.ceil(width);
+        int newCellHeight = (int) Math.ceil(height);
+        if (atlas == null || newCellWidth != cellWidth || newCellHeight != cellHeight) {
+            cellWidth = newCellWidth;
+            cellHeight = newCellHeight;
+            build(ColorIndex.size());
+        }
+    }
+
+    /**
+     * Dibuja todas las celdas en un Bitmap nuevo.
+     *
+     * @param colors cuántos colores de la paleta incluir.
+     */
+    private void build(int colors) {
+        recycle();
+        if (cellWidth <= 0 || cellHeight <= 0) return;
+        this.colors = colors;
+        atlas = Bitmap.createBitmap((cellWidth + 1) * colors, (cellHeight + 1) * 2, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(atlas);
+        for (int index = 0; index < colors; index++) {
+            if (index == ColorIndex.EMPTY) continue;
+            float x0 = index * (cellWidth + 1);
+            float x1 = x0 + cellWidth;
+            float ghostY0 = cellHeight + 1;
+            foreground.setColor(palette.getArgb(index));
+            canvas.drawRect(x0, 0, x1, cellHeight, foreground);
+            canvas.drawRect(x0, 0, x1, cellHeight, border);
+            foreground.setAlpha(GHOST_ALPHA);
+            canvas.drawRect(x0, ghostY0, x1, ghostY0 + cellHeight, foreground);
+        }
+    }
+
+    /**
+     * Dibuja una celda con relleno y borde.
+     *
+     * @param canvas donde dibujar.
+     * @param index el índice de la paleta del color de la celda.
+     * @param x0 el lado izquierdo.
+     * @param y0 el lado de arriba.
+     * @param x1 el lado derecho.
+     * @param y1 el lado de abajo.
+     */
+    void drawCell(Canvas canvas, int index, float x0, float y0, float x1, float y1) {
+        if (prepare(index)) blit(canvas, index, SOLID_ROW, 1, x0, y0, x1, y1);
+        else {
+            foreground.setColor(palette.getArgb(index));
+            canvas.drawRect(x0, y0, x1, y1, foreground);
+            canvas.drawRect(x0, y0, x1, y1, border);
+        }
+    }
+
+    /**
+     * Dibuja una celda transparente de la sombra, sin borde.
+     *
+     * @param canvas donde dibujar.
+     * @param index el índice de la paleta del color de la celda.
+     * @param x0 el lado izquierdo.
+     * @param y0 el lado de arriba.
+     * @param x1 el lado derecho.
+     * @param y1 el lado de abajo.
+     */
+    void drawGhostCell(Canvas canvas, int index, float x0, float y0, float x1, float y1) {
+        if (prepare(index)) blit(canvas, index, GHOST_ROW, 0, x0, y0, x1, y1);
+        else {
+            foreground.setColor(palette.getArgb(index));
+            foreground.setAlpha(GHOST_ALPHA);
+            canvas.drawRect(x0, y0, x1, y1, foreground);
+        }
+    }
+
+    /**
+     * @param index el índice de la paleta que se va a dibujar.
+     * @return si hay celdas dibujadas para el índice; si es un color nuevo se vuelven a dibujar.
+     */
+    private boolean prepare(int index) {
+        if (atlas == null) return false;
+        if (index >= colors) build(ColorIndex.size());
+        return atlas != null;
+    }
+
+    /**
+     * Copia una celda del atlas al rectángulo dado.
+     *
+     * @param canvas donde dibujar.
+     * @param index el índice de la paleta del color de la celda.
+     * @param atlasRow la fila del atlas, con o sin borde.
+     * @param borderPixels 1 para copiar también el borde de la derecha y de abajo, que cae fuera
+     *        del rectángulo, o 0 para copiar solo la celda.
+     * @param x0 el lado izquierdo.
+     * @param y0 el lado de arriba.
+     * @param x1 el lado derecho.
+     * @param y1 el lado de abajo.
+     */
+    private void blit(Canvas canvas, int index, int atlasRow, int borderPixels, float x0, float y0, float x1, float y1) {
+        int left = index * (cellWidth + 1);
+        int top = atlasRow * (cellHeight + 1);
+        source.set(left, top, left + cellWidth + borderPixels, top + cellHeight + borderPixels);
+        destination.set(x0, y0, x1 + borderPixels, y1 + borderPixels);
+        canvas.drawBitmap(atlas, source, destination, null);
+    }
+
+    /** Libera el Bitmap; las celdas se dibujan con rectángulos hasta el siguiente tamaño. */
+    void recycle() {
+        if (atlas != null) atlas.recycle();
+        atlas = null;
+    }
+}
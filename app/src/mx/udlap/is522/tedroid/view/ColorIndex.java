@@ -0,0 +1,122 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+import mx.udlap.is522.tedroid.R;
+
+import java.util.Arrays;
+
+/**
+ * Índices de los colores de las figuras. Cada R.color.id tiene un índice pequeño que es lo que
+ * guardan el tablero y las rotaciones de las figuras; la tabla de los colores de las figuras
+ * conocidas se construye una sola vez y buscar en ella no toma ningún candado. Solo las figuras
+ * personalizadas agregan colores, al construir sus rotaciones. Los colores ARGB de cada índice
+ * los resuelve {@link Palette} en las vistas.
+ *
+ * @author Daniel Pedraza-Arcega
+ * @since 1.3
+ */
+final class ColorIndex {
+
+    /** Índice de las celdas vacías (android.R.color.transparent). */
+    static final int EMPTY = 0;
+
+    /** Máximo de colores para que cualquier índice quepa en un byte. */
+    static final int MAX_COLORS = Byte.MAX_VALUE + 1;
+
+    /** Los colores de las figuras conocidas; solo se reemplaza por una copia más grande. */
+    private static volatile int[] colorIds = {
+        android.R.color.transparent,
+        R.color.tetromino_i, R.color.tetromino_j, R.color.tetromino_l, R.color.tetromino_o,
+        R.color.tetromino_s, R.color.tetromino_t, R.color.tetromino_z,
+        R.color.tetromino_special_i, R.color.tetromino_special_l, R.color.tetromino_special_s };
+
+    /** NO INVOCAR. */
+    private ColorIndex() {
+        throw new IllegalAccessError("This class cannot be instantiated nor extended");
+    }
+
+    /**
+     * Busca el índice de un color sin candado; si es la primera vez que aparece, como en las
+     * figuras personalizadas, le asigna uno nuevo.
+     *
+     * @param colorId android.R.color.transparent o un R.color.id.
+     * @return el índice del color.
+     * @throws IllegalStateException si ya no caben más colores.
+     */
+    static int indexOf(int colorId) {
+        int index = find(colorIds, colorId);
+        return index >= 0 ? index : add(colorId);
+    }
+
+    /**
+     * @param index un índice de color.
+     * @return el android.R.color.transparent o R.color.id del índice.
+     */
+    static int colorIdOf(int index) {
+        return colorIds[index];
+    }
+
+    /** @return cuántos colores tienen índice hasta ahora. */
+    static int size() {
+        return colorIds.length;
+    }
+
+    /**
+     * @param colorMatrix una matriz de android.R.color.transparent y R.color.ids.
+     * @return una nueva matriz con el índice de cada color.
+     */
+    static int[][] indexMatrixOf(int[][] colorMatrix) {
+        int[][] indexMatrix = new int[colorMatrix.length][];
+        for (int row = 0; row < colorMatrix.length; row++) {
+            indexMatrix[row] = new int[colorMatrix[row].length];
+            for (int column = 0; column < colorMatrix[row].length; column++) indexMatrix[row][column] = indexOf(colorMatrix[row][column]);
+        }
+
+        return indexMatrix;
+    }
+
+    /**
+     * @param ids los colores con índice.
+     * @param colorId el color a buscar.
+     * @return el índice del color o -1 si no tiene.
+     */
+    private static int find(int[] ids, int colorId) {
+        for (int index = 0; index < ids.length; index++) {
+            if (ids[index] == colorId) return index;
+        }
+        return -1;
+    }
+
+    /**
+     * Le asigna un índice a un color nuevo. Se vuelve a buscar con el candado por si otro hilo lo
+     * agregó primero.
+     *
+     * @param colorId el color a agregar.
+     * @return el índice del color.
+     * @throws IllegalStateException si ya no caben más colores.
+     */
+    private static synchronized int add(int colorId) {
+        int[] ids = colorIds;
+        int index = find(ids, colorId);
+        if (index >= 0) return index;
+        if (ids.length == MAX_COLORS) throw new IllegalStateException("Too many colors");
+        ids = Arrays.copyOf(ids, ids.length + 1);
+        ids[ids.length - 1] = colorId;
+        colorIds = ids;
+        return ids.length - 1;
+    }
+}
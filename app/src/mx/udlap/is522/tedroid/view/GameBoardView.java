@@ -15,71 +15,90 @@
  */
 package mx.udlap.is522.tedroid.view;
 
+import android.annotation.TargetApi;
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Paint;
-import android.media.AudioManager;
-import android.media.SoundPool;
-import android.os.AsyncTask;
-import android.preference.PreferenceManager;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.SystemClock;
 import android.util.AttributeSet;
-import android.util.SparseIntArray;
+import android.view.Choreographer;
 import android.view.GestureDetector;
+import android.view.InputDevice;
+import android.view.KeyEvent;
 import android.view.MotionEvent;
 import android.view.View;
 
-import mx.udlap.is522.tedroid.R;
-
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Tablero del juego donde los tetrominos se acumlan.
+ * Tablero del juego donde los tetrominos se acumlan. Los cambios del juego no redibujan la vista
+ * en cuanto pasan; se juntan y se dibujan en el siguiente cuadro de la pantalla con
+ * {@link Choreographer} (API 16+), donde también avanza la animación del tetromino al bajar. La
+ * vista dibuja copias del juego que el hilo del juego publica en un {@link SnapshotBuffer}, así
+ * que dibujar no espera a los pasos ni a la entrada del jugador, ni ellos al dibujo.
  * 
  * @author Daniel Pedraza-Arcega, Andrés Peña-Peralta, Wassim Lima Saad
  * @since 1.0
  */
 public class GameBoardView extends View {
 
-    public static final int DEFAULT_LEVEL = 0;
-    public static final int MAX_LEVEL = 9;
+    public static final int DEFAULT_LEVEL = GameEngine.DEFAULT_LEVEL;
+    public static final int MAX_LEVEL = GameEngine.MAX_LEVEL;
 
-    private static final long DEFAULT_SPEED = 1000L;
     private static final int HEIGHT_ASPECT = 2;
-    private static final int SPEED_FACTOR = 6;
-    private static final int DEFAULT_COLUMNS = 10;
-    private static final int DEFAULT_ROWS = 20;
-    private static final int DROP_SOUND = 0;
-    private static final int GAME_OVER_SOUND = 1;
-    private static final int LEVEL_UP_SOUND = 2;
-    private static final int LINE_CLEAR_SOUND = 3;
-    private static final int PAUSE_SOUND = 4;
-    private static final int ROTATE_SOUND = 5;
-
-    private Tetromino currentTetromino;
-    private Tetromino nextTetromino;
-    private int[][] boardMatrix;
-    private int initialLevel;
-    private int repeatedTetromino;
-    private long currentSpeed;
+    private static final int INPUT_QUEUE_CAPACITY = 64;
+    private static final long FALLBACK_FRAME_MILLIS = 16L;
+    private static final long MOVE_ANIMATION_NANOS = 60000000L;
+    private static final long NO_ANIMATION = Long.MIN_VALUE;
+
+    private GameEngine gameEngine;
     private float boardColumnWidth;
     private float boardRowHeight;
-    private boolean isPaused;
-    private boolean isGameOver;
-    private boolean isGameStarted;
     private GestureListener gestureListener;
     private GestureDetector gestureDetector;
-    private MoveDownCurrentTetrominoTask moveDownCurrentTetrominoTask;
-    private Paint tetrominoBorder;
-    private Paint tetrominoForeground;
+    private SwipeTracker swipeTracker;
+    private KeyRepeater keyRepeater;
+    private GameLoop gameLoop;
+    private InputQueue inputQueue;
+    private int hatX;
+    private int hatY;
+    private boolean isSoftDropLocked;
+    private volatile long lastInputLatencyMillis;
+    private volatile long maxInputLatencyMillis;
     private Paint gridBackground;
+    private CellAtlas cellAtlas;
+    private Bitmap gridLayer;
+    private Bitmap boardLayer;
+    private Canvas boardLayerCanvas;
+    private Paint clearForeground;
+    private SnapshotBuffer snapshotBuffer;
+    private GameSnapshot snapshot;
+    private boolean isSnapshotStale;
+    private boolean isFullFrameRequested;
+    private Rect drawnTetrominoCells;
+    private Rect pendingCells;
+    private Rect animatedCells;
+    private Rect boardCells;
+    private boolean isFullFramePending;
+    private AtomicBoolean isFrameRequested;
+    private Runnable scheduleFrameTask;
+    private Runnable fallbackFrameTask;
+    private VsyncFrameCallback vsyncFrameCallback;
+    private int[][] lastShapeMatrix;
+    private int lastRow;
+    private int lastColumn;
+    private long animationStartNanos;
+    private float animationFromOffset;
+    private float tetrominoRowOffset;
     private OnCommingNextTetrominoListener commingNextTetrominoListener;
     private OnPointsAwardedListener pointsAwardedListener;
     private OnGameOverListener gameOverListener;
-    private Random random;
-    private SoundPool soundPool;
-    private SparseIntArray soundPoolMap;
+    private SoundEffects soundEffects;
 
     /**
      * Construye un tablero de juego mediante un context.
@@ -114,8 +133,28 @@ public class GameBoardView extends View {
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
-        boardColumnWidth = w / ((float) boardMatrix[0].length);
-        boardRowHeight = h / ((float) boardMatrix.length);
+        boardColumnWidth = w / ((float) getBoard().getColumns());
+        boardRowHeight = h / ((float) getBoard().getRows());
+        cellAtlas.setCellSize(boardColumnWidth, boardRowHeight);
+        swipeTracker.setCellSize(boardColumnWidth, boardRowHeight);
+        setUpGridLayer(w, h);
+        setUpBoardLayer(w, h);
+    }
+
+    /**
+     * Dibuja la cuadrilla una sola vez en un Bitmap del tamaño de la vista, ya que solo cambia
+     * cuando cambia el tamaño.
+     * 
+     * @param width el ancho de la vista.
+     * @param height el alto de la vista.
+     */
+    private void setUpGridLayer(int width, int height) {
+        if (gridLayer != null) gridLayer.recycle();
+        gridLayer = null;
+        if (width > 0 && height > 0) {
+            gridLayer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            drawGridLines(new Canvas(gridLayer), width, height);
+        }
     }
 
     @Override
@@ -127,9 +166,179 @@ public class GameBoardView extends View {
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
+        // Solo se dibuja la última copia que se tomó, sin el candado de las reglas del juego
         drawViewOnCanvas(canvas);
     }
 
+    /**
+     * Pide que se publique el estado del juego; se redibujan solo las celdas que cambiaron. Se
+     * ejecuta con el candado de las reglas del juego.
+     */
+    protected void requestFrame() {
+        isSnapshotStale = true;
+    }
+
+    /**
+     * Pide que se publique el estado del juego y que en el siguiente cuadro se redibuje toda la
+     * vista. Se ejecuta con el candado de las reglas del juego.
+     */
+    protected void requestFullFrame() {
+        isSnapshotStale = true;
+        isFullFrameRequested = true;
+    }
+
+    /**
+     * Copia el estado del juego y lo publica para el siguiente cuadro si cambió desde la última
+     * copia. Se ejecuta con el candado de las reglas del juego al terminar cada paso o comando.
+     */
+    private void publishFrame() {
+        if (isSnapshotStale) {
+            GameSnapshot back = snapshotBuffer.getBack();
+            gameEngine.capture(back);
+            back.setFullFrame(isFullFrameRequested);
+            // Las filas que cambiaron ya van en la copia
+            getBoard().clearDirtyRows();
+            isSnapshotStale = false;
+            isFullFrameRequested = false;
+            snapshotBuffer.publish();
+        }
+    }
+
+    /** Pide un cuadro al hilo principal si no hay uno pedido; se ejecuta desde cualquier hilo. */
+    private void scheduleFrame() {
+        if (isFrameRequested.compareAndSet(false, true)) post(scheduleFrameTask);
+    }
+
+    /** Pide el siguiente cuadro de la pantalla; se ejecuta en el hilo principal. */
+    private void postFrame() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            if (vsyncFrameCallback == null) vsyncFrameCallback = new VsyncFrameCallback(this);
+            vsyncFrameCallback.postFrame();
+        } else postDelayed(fallbackFrameTask, FALLBACK_FRAME_MILLIS);
+    }
+
+    /**
+     * Toma la última copia publicada del juego, invalida de una vez todo lo que cambió desde la
+     * copia anterior y avanza la animación del tetromino; si la animación sigue pide otro cuadro.
+     * 
+     * @param frameTimeNanos el tiempo del cuadro en la base de {@link System#nanoTime()}.
+     */
+    void drawFrame(long frameTimeNanos) {
+        isFrameRequested.set(false);
+        boolean wasAnimating = tetrominoRowOffset != 0f;
+        GameSnapshot latest = snapshotBuffer.pollLatest();
+        if (latest != null) {
+            if (onSnapshotChanged(latest)) isFullFramePending = true;
+            else {
+                pendingCells.union(drawnTetrominoCells);
+                if (latest.hasTetromino()) {
+                    setTetrominoCells(latest, animatedCells);
+                    pendingCells.union(animatedCells);
+                }
+                if (latest.hasDirtyRows()) {
+                    boardCells.set(0, latest.getDirtyTopRow(), getBoard().getColumns(), latest.getDirtyBottomRow() + 1);
+                    pendingCells.union(boardCells);
+                }
+            }
+            snapshot = latest;
+            updateBoardLayer();
+        }
+        boolean isAnimating = updateTetrominoAnimation(frameTimeNanos);
+        if (isFullFramePending) invalidate();
+        else {
+            if (wasAnimating || isAnimating) {
+                setTetrominoCells(snapshot, animatedCells);
+                animatedCells.top--;
+                pendingCells.union(animatedCells);
+                pendingCells.union(drawnTetrominoCells);
+            }
+            if (!pendingCells.isEmpty()) invalidateCells(pendingCells);
+        }
+        isFullFramePending = false;
+        pendingCells.setEmpty();
+        if (snapshot.hasTetromino()) {
+            setTetrominoCells(snapshot, drawnTetrominoCells);
+            // A media animación el tetromino también ocupa parte de la fila de arriba
+            if (tetrominoRowOffset < 0f) drawnTetrominoCells.top--;
+        } else drawnTetrominoCells.setEmpty();
+        if (isAnimating && isFrameRequested.compareAndSet(false, true)) postFrame();
+    }
+
+    /**
+     * Se ejecuta en el hilo principal al tomar una copia nueva del juego, antes de dibujarla.
+     * 
+     * @param latest la copia nueva.
+     * @return si hay que redibujar toda la vista o basta con las celdas que cambiaron.
+     */
+    boolean onSnapshotChanged(GameSnapshot latest) {
+        return latest.isFullFrame();
+    }
+
+    /**
+     * Empieza a deslizar el tetromino en juego si desde el cuadro anterior bajó una sola fila, y
+     * calcula cuánto le falta para llegar.
+     * 
+     * @param frameTimeNanos el tiempo del cuadro.
+     * @return si la animación sigue y hace falta otro cuadro.
+     */
+    private boolean updateTetrominoAnimation(long frameTimeNanos) {
+        if (isInEditMode() || !snapshot.hasTetromino()) {
+            tetrominoRowOffset = 0f;
+            return false;
+        }
+        int[][] shapeMatrix = snapshot.getTetrominoMatrix();
+        int row = snapshot.getTetrominoRow();
+        int column = snapshot.getTetrominoColumn();
+        if (shapeMatrix == lastShapeMatrix && column == lastColumn && row == lastRow + 1) {
+            // Se sigue desde donde iba dibujado, pero nunca más de una fila atrás, que es lo que se
+            // invalida de más arriba del tetromino
+            animationFromOffset = Math.max(tetrominoRowOffset - 1f, -1f);
+            animationStartNanos = frameTimeNanos;
+        } else if (shapeMatrix != lastShapeMatrix || column != lastColumn || row != lastRow) animationStartNanos = NO_ANIMATION;
+        lastShapeMatrix = shapeMatrix;
+        lastRow = row;
+        lastColumn = column;
+        if (animationStartNanos == NO_ANIMATION) {
+            tetrominoRowOffset = 0f;
+            return false;
+        }
+        float progress = (frameTimeNanos - animationStartNanos) / (float) MOVE_ANIMATION_NANOS;
+        if (progress >= 1f) {
+            animationStartNanos = NO_ANIMATION;
+            tetrominoRowOffset = 0f;
+            return false;
+        }
+        tetrominoRowOffset = animationFromOffset * (1f - Math.max(progress, 0f));
+        return true;
+    }
+
+    /**
+     * Invalida los pixeles de un rectángulo de celdas.
+     * 
+     * @param cells las columnas y filas; right y bottom son exclusivos.
+     */
+    protected void invalidateCells(Rect cells) {
+        // Un pixel de más por los bordes de las celdas
+        invalidate((int) (cells.left * boardColumnWidth) - 1, 
+                (int) (cells.top * boardRowHeight) - 1, 
+                (int) Math.ceil(cells.right * boardColumnWidth) + 1, 
+                (int) Math.ceil(cells.bottom * boardRowHeight) + 1);
+    }
+
+    /**
+     * Calcula el rectángulo de celdas que ocupan el tetromino en juego de una copia y su sombra.
+     * 
+     * @param snapshot la copia del juego; debe tener tetromino.
+     * @param cells donde guardar las columnas y filas; right y bottom son exclusivos.
+     */
+    private void setTetrominoCells(GameSnapshot snapshot, Rect cells) {
+        int[][] shapeMatrix = snapshot.getTetrominoMatrix();
+        cells.set(snapshot.getTetrominoColumn(), 
+                snapshot.getTetrominoRow(), 
+                snapshot.getTetrominoColumn() + shapeMatrix[0].length, 
+                snapshot.getGhostRow() + shapeMatrix.length);
+    }
+
     /**
      * Dibuja este tablaro en el Canvas.
      * 
@@ -138,244 +347,529 @@ public class GameBoardView extends View {
     protected void drawViewOnCanvas(Canvas canvas) {
         drawBackgroundGrid(canvas);
         if (!isInEditMode()) {
-            currentTetromino.drawOn(canvas);
+            drawGhostTetromino(canvas);
+            drawCurrentTetromino(canvas);
             drawBoardMatrix(canvas);
         } else {
-            currentTetromino = randomTetromino();
-            currentTetromino.centerOnGameBoardView();
-            currentTetromino.drawOn(canvas);
+            Tetromino tetromino = gameEngine.randomTetromino();
+            tetromino.centerOnBoard();
+            drawTetromino(canvas, tetromino);
         }
     }
     
+    /**
+     * Crea el Bitmap donde se guardan dibujados los tetrominos acumulados en el tablero.
+     * 
+     * @param width el ancho de la vista.
+     * @param height el alto de la vista.
+     */
+    private void setUpBoardLayer(int width, int height) {
+        if (boardLayer != null) boardLayer.recycle();
+        boardLayer = null;
+        boardLayerCanvas = null;
+        if (width > 0 && height > 0) {
+            boardLayer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            boardLayerCanvas = new Canvas(boardLayer);
+            drawBoardRows(boardLayerCanvas, 0, getBoard().getRows() - 1);
+        }
+    }
+
     /** Pinta el fondo de la cuadrilla del tablero. */
     protected void drawBackgroundGrid(Canvas canvas) {
-        for (int i = 0; i < boardMatrix[0].length; i++) canvas.drawLine(i * boardColumnWidth, 0, i * boardColumnWidth, getHeight(), gridBackground);
-        for (int i = 0; i < boardMatrix.length; i++) canvas.drawLine(0, i * boardRowHeight, getWidth(), i * boardRowHeight, gridBackground);
+        if (gridLayer != null) canvas.drawBitmap(gridLayer, 0, 0, null);
+        else drawGridLines(canvas, getWidth(), getHeight());
+    }
+
+    /**
+     * Dibuja las lineas de la cuadrilla.
+     * 
+     * @param canvas el objeto donde dibujar.
+     * @param width el largo de las lineas horizontales.
+     * @param height el largo de las lineas verticales.
+     */
+    private void drawGridLines(Canvas canvas, int width, int height) {
+        for (int i = 0; i < getBoard().getColumns(); i++) canvas.drawLine(i * boardColumnWidth, 0, i * boardColumnWidth, height, gridBackground);
+        for (int i = 0; i < getBoard().getRows(); i++) canvas.drawLine(0, i * boardRowHeight, width, i * boardRowHeight, gridBackground);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (!isInEditMode()) soundEffects.start();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        soundEffects.stop();
+        removeCallbacks(scheduleFrameTask);
+        removeCallbacks(fallbackFrameTask);
+        if (vsyncFrameCallback != null) vsyncFrameCallback.cancel();
+        isFrameRequested.set(false);
+        super.onDetachedFromWindow();
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        return gestureDetector.onTouchEvent(event);
+        // Los toques y toques largos los reconoce el GestureDetector y el arrastre el SwipeTracker
+        boolean handled = gestureDetector.onTouchEvent(event);
+        swipeTracker.onTouchEvent(event);
+        return handled;
+    }
+
+    @Override
+    public boolean onKeyDown(int keyCode, KeyEvent event) {
+        int command = KeyRepeater.commandForKey(keyCode);
+        if (command == InputQueue.NONE) return super.onKeyDown(keyCode, event);
+        // Las repeticiones de Android se ignoran, el KeyRepeater lleva su propio tiempo en el hilo
+        // del juego
+        if (event.getRepeatCount() == 0) pressInput(command, event.getEventTime());
+        return true;
+    }
+
+    @Override
+    public boolean onKeyUp(int keyCode, KeyEvent event) {
+        int command = KeyRepeater.commandForKey(keyCode);
+        if (KeyRepeater.directionOf(command) != null) {
+            releaseInput(command, event.getEventTime());
+            return true;
+        }
+        return super.onKeyUp(keyCode, event);
+    }
+
+    /** Muchos controles mandan su cruceta como los ejes HAT_X y HAT_Y en lugar de teclas. */
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB_MR1)
+    @Override
+    public boolean onGenericMotionEvent(MotionEvent event) {
+        if ((event.getSource() & InputDevice.SOURCE_JOYSTICK) == InputDevice.SOURCE_JOYSTICK && event.getActionMasked() == MotionEvent.ACTION_MOVE) {
+            int x = Math.round(event.getAxisValue(MotionEvent.AXIS_HAT_X));
+            int y = Math.round(event.getAxisValue(MotionEvent.AXIS_HAT_Y));
+            if (x != hatX) {
+                releaseInput(KeyRepeater.commandForHat(hatX, InputQueue.MOVE_LEFT, InputQueue.MOVE_RIGHT), event.getEventTime());
+                pressInput(KeyRepeater.commandForHat(x, InputQueue.MOVE_LEFT, InputQueue.MOVE_RIGHT), event.getEventTime());
+                hatX = x;
+            }
+            if (y != hatY) {
+                releaseInput(KeyRepeater.commandForHat(hatY, InputQueue.ROTATE, InputQueue.SOFT_DROP), event.getEventTime());
+                pressInput(KeyRepeater.commandForHat(y, InputQueue.ROTATE, InputQueue.SOFT_DROP), event.getEventTime());
+                hatY = y;
+            }
+            return true;
+        }
+        return super.onGenericMotionEvent(event);
+    }
+
+    /**
+     * Mete a la cola lo que hace una tecla o la cruceta al presionarse: los movimientos empiezan a
+     * repetirse en el hilo del juego y los demás comandos se ejecutan una vez.
+     * 
+     * @param command uno de los comandos de {@link InputQueue}; con {@link InputQueue#NONE} no
+     *        hace nada.
+     * @param eventTime el tiempo del evento.
+     */
+    private void pressInput(int command, long eventTime) {
+        if (KeyRepeater.directionOf(command) != null) sendInput(InputQueue.HOLD | command, eventTime);
+        else if (command != InputQueue.NONE) sendInput(command, eventTime);
+    }
+
+    /**
+     * Mete a la cola que se soltó una tecla o la cruceta; solo importa para los movimientos.
+     * 
+     * @param command uno de los comandos de {@link InputQueue}.
+     * @param eventTime el tiempo del evento.
+     */
+    private void releaseInput(int command, long eventTime) {
+        if (KeyRepeater.directionOf(command) != null) sendInput(InputQueue.RELEASE | command, eventTime);
+    }
+
+    @Override
+    public void onWindowFocusChanged(boolean hasWindowFocus) {
+        super.onWindowFocusChanged(hasWindowFocus);
+        // Sin foco ya no llegan las teclas que se suelten
+        if (!hasWindowFocus) {
+            hatX = 0;
+            hatY = 0;
+            synchronized (gameEngine) {
+                keyRepeater.releaseAll();
+            }
+        }
+    }
+
+    /**
+     * Hace las repeticiones de las teclas que ya tocan y pide al {@link GameLoop} que despierte
+     * para la siguiente. Se ejecuta en el hilo del juego.
+     * 
+     * @param now el tiempo actual en nanosegundos.
+     */
+    private void updateKeyRepeat(long now) {
+        keyRepeater.update(now);
+        if (keyRepeater.isRepeating()) gameLoop.wakeAt(keyRepeater.getNextRepeatTime());
     }
 
     /** Inicializa el layout de este tablero y las variables con su valor por default. */
     protected void setUp() {
-        setUpDefaultValues();
-        setUpBoardMatrix();
-        setUpSounds();
+        setUpGameEngine();
+        setUpFrames();
+        soundEffects = new SoundEffects(getContext());
         setUpGestures();
         setUpStyle();
     }
 
-    /** Inicializa las variables con su valor por default. */
-    private void setUpDefaultValues() {
-        currentSpeed = DEFAULT_SPEED;
-        initialLevel = DEFAULT_LEVEL;
+    /** Inicializa las copias del juego y lo necesario para pedir y dibujar los cuadros. */
+    private void setUpFrames() {
+        snapshotBuffer = new SnapshotBuffer(getBoard().getRows(), getBoard().getColumns());
+        snapshotBuffer.setOnPublishListener(new SnapshotBuffer.OnPublishListener() {
+
+            @Override
+            public void onPublish() {
+                scheduleFrame();
+            }
+        });
+        snapshot = snapshotBuffer.getFront();
+        isFrameRequested = new AtomicBoolean();
+        drawnTetrominoCells = new Rect();
+        pendingCells = new Rect();
+        animatedCells = new Rect();
+        boardCells = new Rect();
+        animationStartNanos = NO_ANIMATION;
+        scheduleFrameTask = new Runnable() {
+
+            @Override
+            public void run() {
+                postFrame();
+            }
+        };
+        fallbackFrameTask = new Runnable() {
+
+            @Override
+            public void run() {
+                drawFrame(System.nanoTime());
+            }
+        };
+    }
+
+    /**
+     * Inicializa las reglas del juego y escucha sus eventos. Los comandos de los gestos y la
+     * gravedad se ejecutan en el hilo del {@link GameLoop}; las reglas del juego sirven de candado
+     * entre ese hilo y el principal, que llama a los métodos públicos de esta vista. Al terminar
+     * cada paso se publica una copia para dibujar.
+     */
+    private void setUpGameEngine() {
+        gameEngine = createGameEngine();
+        gameEngine.setOnGameEventListener(new GameEventListener());
+        inputQueue = new InputQueue(INPUT_QUEUE_CAPACITY);
+        gameLoop = new GameLoop(gameEngine.getGravityNanos(), new GameLoop.OnTickListener() {
+
+            @Override
+            public void onTick() {
+                synchronized (gameEngine) {
+                    // Un hilo detenido que esperaba el candado ya no debe mover el juego nuevo
+                    if (!gameLoop.isCurrentThread()) return;
+                    long now = System.nanoTime();
+                    drainInput(now);
+                    updateKeyRepeat(now);
+                    gameEngine.tick();
+                    publishFrame();
+                }
+            }
+        });
+        gameLoop.setOnWakeListener(new GameLoop.OnWakeListener() {
+
+            @Override
+            public void onWake() {
+                synchronized (gameEngine) {
+                    if (!gameLoop.isCurrentThread()) return;
+                    long now = System.nanoTime();
+                    drainInput(now);
+                    updateKeyRepeat(now);
+                    publishFrame();
+                }
+            }
+        });
+    }
+
+    /**
+     * Mete un comando a la cola y despierta al {@link GameLoop} para que se atienda sin esperar al
+     * siguiente paso. Mientras el juego no corre los comandos se descartan para que no se
+     * ejecuten al reanudar.
+     * 
+     * @param command uno de los comandos de {@link InputQueue}.
+     * @param eventTime el tiempo del evento que causó el comando en la base de
+     *        {@link SystemClock#uptimeMillis()}.
+     */
+    private void sendInput(int command, long eventTime) {
+        if (gameLoop.isRunning() && !gameLoop.isPaused() && inputQueue.offer(command, eventTime)) gameLoop.wake();
+    }
+
+    /**
+     * Mete a la cola el movimiento de una celda del arrastre.
+     * 
+     * @param direction hacia dónde moverse.
+     * @param eventTime el tiempo de la muestra del dedo que causó el movimiento.
+     */
+    private void sendMove(Tetromino.Direction direction, long eventTime) {
+        switch (direction) {
+            case LEFT: sendInput(InputQueue.MOVE_LEFT, eventTime); break;
+            case RIGHT: sendInput(InputQueue.MOVE_RIGHT, eventTime); break;
+            default: sendInput(InputQueue.SOFT_DROP, eventTime); break;
+        }
+    }
+
+    /**
+     * Ejecuta en orden los comandos pendientes de la cola y mide cuánto tardó cada movimiento
+     * desde el evento que lo causó. Se ejecuta en el hilo del juego.
+     * 
+     * @param now el tiempo actual en nanosegundos.
+     */
+    private void drainInput(long now) {
+        int command;
+        while ((command = inputQueue.poll()) != InputQueue.NONE) {
+            if ((command & InputQueue.HOLD) != 0) {
+                Tetromino.Direction direction = KeyRepeater.directionOf(command & ~InputQueue.HOLD);
+                // Cada vez que se presiona abajo es un SoftDrop nuevo
+                if (direction == Tetromino.Direction.DOWN) gameEngine.resetSoftDrop();
+                keyRepeater.press(direction, now);
+                // Presionar la tecla mueve una vez en seguida, así que también cuenta
+                recordInputLatency();
+                continue;
+            }
+            if ((command & InputQueue.RELEASE) != 0) {
+                keyRepeater.release(KeyRepeater.directionOf(command & ~InputQueue.RELEASE), now);
+                continue;
+            }
+            switch (command) {
+                case InputQueue.MOVE_LEFT: moveBySwipe(Tetromino.Direction.LEFT); break;
+                case InputQueue.MOVE_RIGHT: moveBySwipe(Tetromino.Direction.RIGHT); break;
+                case InputQueue.SOFT_DROP: moveBySwipe(Tetromino.Direction.DOWN); break;
+                case InputQueue.ROTATE: gameEngine.rotate(); break;
+                case InputQueue.HARD_DROP: gameEngine.hardDrop(); break;
+                case InputQueue.RESET_SOFT_DROP:
+                    // El gesto nuevo vuelve a mover aunque el anterior haya bajado un tetromino
+                    isSoftDropLocked = false;
+                    gameEngine.resetSoftDrop();
+                    continue;
+            }
+            recordInputLatency();
+        }
     }
 
-    /** Inicializa la matriz y la llena de color transparente. */
-    private void setUpBoardMatrix() {
-        boardMatrix = new int[DEFAULT_ROWS][DEFAULT_COLUMNS];
-        for (int[] row : boardMatrix) Arrays.fill(row, android.R.color.transparent);
+    /**
+     * Guarda cuánto tardó en ejecutarse el último comando que se sacó de la cola desde el evento
+     * que lo causó. Se ejecuta en el hilo del juego.
+     */
+    private void recordInputLatency() {
+        lastInputLatencyMillis = SystemClock.uptimeMillis() - inputQueue.getPolledEventTime();
+        if (lastInputLatencyMillis > maxInputLatencyMillis) maxInputLatencyMillis = lastInputLatencyMillis;
     }
 
-    /** Inicializa los objetos encargados de manejar los gestos de esta vista. */
+    /**
+     * Mueve el tetromino en juego una celda por un arrastre, a menos que el mismo gesto ya haya
+     * bajado un tetromino hasta el tablero en modo SoftDrop. Se ejecuta en el hilo del juego.
+     * 
+     * @param direction hacia dónde se arrastró.
+     */
+    private void moveBySwipe(Tetromino.Direction direction) {
+        if (!isSoftDropLocked) moveByInput(direction);
+    }
+
+    /**
+     * Mueve el tetromino en juego una celda por un comando de la cola o una repetición de las
+     * teclas. Se ejecuta en el hilo del juego.
+     * 
+     * @param direction hacia dónde se arrastró o la tecla presionada.
+     * @return si se sigue la repetición o no; al bajar en modo SoftDrop hasta quedarse en el
+     *         tablero se deja de seguir.
+     */
+    boolean moveByInput(Tetromino.Direction direction) {
+        switch (direction) {
+            case LEFT: gameEngine.moveLeft(); return true;
+            case RIGHT: gameEngine.moveRight(); return true;
+            default: return gameEngine.softDrop();
+        }
+    }
+
+    /** @return las reglas del juego que dibuja este tablero. */
+    protected GameEngine createGameEngine() {
+        return new GameEngine();
+    }
+
+    /** Inicializa los objetos encargados de manejar los gestos y las teclas de esta vista. */
     private void setUpGestures() {
         gestureListener = new GestureListener();
         gestureDetector = new GestureDetector(getContext(), gestureListener);
-    }
+        swipeTracker = new SwipeTracker(new SwipeTracker.OnSwipeListener() {
 
-    /** Inicializa los sonidos a reproducir. */
-    private void setUpSounds() {
-        if (isSoundEnabled()) {
-            soundPool = new SoundPool(6, AudioManager.STREAM_MUSIC, 0);
-            soundPoolMap = new SparseIntArray(6);
-            soundPoolMap.put(DROP_SOUND, soundPool.load(getContext(), R.raw.on_drop, 1));
-            soundPoolMap.put(GAME_OVER_SOUND, soundPool.load(getContext(), R.raw.on_game_over, 1));
-            soundPoolMap.put(LEVEL_UP_SOUND, soundPool.load(getContext(), R.raw.on_level_up, 1));
-            soundPoolMap.put(LINE_CLEAR_SOUND, soundPool.load(getContext(), R.raw.on_line_clear, 1));
-            soundPoolMap.put(PAUSE_SOUND, soundPool.load(getContext(), R.raw.on_pause, 1));
-            soundPoolMap.put(ROTATE_SOUND, soundPool.load(getContext(), R.raw.on_rotate, 1));
-        }
+            @Override
+            public boolean onSwipe(Tetromino.Direction direction, long eventTime) {
+                sendMove(direction, eventTime);
+                return true;
+            }
+        });
+        keyRepeater = new KeyRepeater(new KeyRepeater.OnRepeatListener() {
+
+            @Override
+            public boolean onRepeat(Tetromino.Direction direction) {
+                return moveByInput(direction);
+            }
+        });
+        setFocusable(true);
+        setFocusableInTouchMode(true);
     }
 
     /** Inicializa el estilo para pintar. */
     private void setUpStyle() {
-        tetrominoForeground = new Paint();
-        tetrominoForeground.setStyle(Paint.Style.FILL); // El color se toma de la matriz
-        tetrominoBorder = new Paint();
-        tetrominoBorder.setStyle(Paint.Style.STROKE);
-        tetrominoBorder.setColor(getContext().getResources().getColor(Shape.BORDER_COLOR));
+        cellAtlas = new CellAtlas(new Palette(getContext().getResources()), getContext().getResources().getColor(Shape.BORDER_COLOR));
+        clearForeground = new Paint();
+        clearForeground.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
         gridBackground = new Paint();
         gridBackground.setStyle(Paint.Style.STROKE);
         gridBackground.setColor(getContext().getResources().getColor(android.R.color.black));
     }
 
     /**
-     * Inicializa el tetromino actual, lo centra en el esta vista e inicializa el próximo tetromino
-     * en cola. Si no puede centrar el tetromino actual, el juego habrá terminado.
+     * Dibuja un tetromino en el canvas con las dimensiones de este tablero.
+     * 
+     * @param canvas el objeto donde dibujar.
+     * @param tetromino el tetromino a dibujar.
      */
-    protected void setUpNewTetrominos() {
-        if (nextTetromino == null) currentTetromino = randomTetromino();
-        else currentTetromino = nextTetromino;
-        do nextTetromino = randomTetromino(); while (shouldGetAnotherRandomTetromino());
-        if (commingNextTetrominoListener != null) commingNextTetrominoListener.onCommingNextTetromino(nextTetromino);
-        if (!currentTetromino.centerOnGameBoardView()) onGameOver();
-    }
-
-    /** @return tetromino escogiendo al azar una de las figuras predefinadas. */
-    protected Tetromino randomTetromino() {
-        int randomIndex = getRandom().nextInt(TetrominoShape.values().length);
-        TetrominoShape randomShape = TetrominoShape.values()[randomIndex];
-        return new Tetromino.Builder(this).use(randomShape).build();
+    protected void drawTetromino(Canvas canvas, Tetromino tetromino) {
+        Tetromino.Position position = tetromino.getPosition();
+        drawTetrominoCells(canvas, tetromino.getIndexMatrix(), position.getBoardMatrixRow(), position.getBoardMatrixColumn());
     }
 
     /**
-     * Revisa que no haya más de 3 tetrominos repetidos uno tras otro.
+     * Dibuja el tetromino en juego de la copia donde va su animación al bajar.
      * 
-     * @return si ya se repitio 3 veces o más.
+     * @param canvas el objeto donde dibujar.
      */
-    private boolean shouldGetAnotherRandomTetromino() {
-        if (currentTetromino.equals(nextTetromino)) {
-            if (repeatedTetromino == 0) repeatedTetromino = 2;
-            else repeatedTetromino++;
-        } else repeatedTetromino = 0;
-
-        return repeatedTetromino >= 3;
+    protected void drawCurrentTetromino(Canvas canvas) {
+        if (snapshot.hasTetromino()) drawTetrominoCells(canvas, snapshot.getTetrominoMatrix(), snapshot.getTetrominoRow() + tetrominoRowOffset, snapshot.getTetrominoColumn());
     }
 
     /**
-     * Detiene el juego, reproduce el sonido de game over y ejecuta
-     * {@link OnGameOverListener#onGameOver()}.
+     * Dibuja las celdas de un tetromino; la fila puede tener una fracción para recorrerlo en
+     * vertical.
+     * 
+     * @param canvas el objeto donde dibujar.
+     * @param shapeMatrix la matriz con los índices de la paleta del tetromino.
+     * @param boardRow la fila del tablero donde va su esquina superior izquierda.
+     * @param boardColumn la columna del tablero donde va su esquina superior izquierda.
      */
-    private void onGameOver() {
-        stopDropingTaskIfNeeded();
-        invalidate();
-        isGameOver = true;
-        isGameStarted = false;
-        play(GAME_OVER_SOUND);
-        if (gameOverListener != null) gameOverListener.onGameOver();
-    }
-
-    /** Actualiza la matriz del tablero con los valores del tetromino actual. */
-    private void updateBoardMatrix() {
-        int[][] shapeMatrix = currentTetromino.getShapeMatrix();
+    private void drawTetrominoCells(Canvas canvas, int[][] shapeMatrix, float boardRow, int boardColumn) {
         for (int row = 0; row < shapeMatrix.length; row++) {
             for (int column = 0; column < shapeMatrix[0].length; column++) {
-                if (shapeMatrix[row][column] != android.R.color.transparent) {
-                    int boardMatrixRow = currentTetromino.getPosition().getBoardMatrixRow() + row;
-                    int boardMatrixColumn = currentTetromino.getPosition().getBoardMatrixColumn() + column;
-                    boardMatrix[boardMatrixRow][boardMatrixColumn] = shapeMatrix[row][column];
+                if (shapeMatrix[row][column] != ColorIndex.EMPTY) {
+                    float x0 = (column + boardColumn) * boardColumnWidth;
+                    float y0 = (row + boardRow) * boardRowHeight;
+                    float x1 = (column + 1 + boardColumn) * boardColumnWidth;
+                    float y1 = (row + 1 + boardRow) * boardRowHeight;
+                    cellAtlas.drawCell(canvas, shapeMatrix[row][column], x0, y0, x1, y1);
                 }
             }
         }
     }
 
     /**
-     * Dibuja los tetrominos acumlados en el tablero.
+     * Dibuja en transparente el lugar donde quedaría el tetromino en juego de la copia si cayera
+     * hasta el fondo.
      * 
-     * @param canvas un Canvas donde dibujar.
+     * @param canvas el objeto donde dibujar.
      */
-    protected void drawBoardMatrix(Canvas canvas) {
-        for (int row = 0; row < boardMatrix.length; row++) {
-            for (int column = 0; column < boardMatrix[0].length; column++) {
-                if (boardMatrix[row][column] != android.R.color.transparent) {
-                    float x0 = column * boardColumnWidth;
-                    float y0 = row * boardRowHeight;
-                    float x1 = (column + 1) * boardColumnWidth;
-                    float y1 = (row + 1) * boardRowHeight;
-                    tetrominoForeground.setColor(getContext().getResources().getColor(boardMatrix[row][column]));
-                    canvas.drawRect(x0, y0, x1, y1, tetrominoForeground);
-                    canvas.drawRect(x0, y0, x1, y1, tetrominoBorder);
+    protected void drawGhostTetromino(Canvas canvas) {
+        if (!snapshot.hasTetromino()) return;
+        int[][] shapeMatrix = snapshot.getTetrominoMatrix();
+        int ghostRow = snapshot.getGhostRow();
+        int ghostColumn = snapshot.getTetrominoColumn();
+        for (int row = 0; row < shapeMatrix.length; row++) {
+            for (int column = 0; column < shapeMatrix[0].length; column++) {
+                if (shapeMatrix[row][column] != ColorIndex.EMPTY) {
+                    float x0 = (column + ghostColumn) * boardColumnWidth;
+                    float y0 = (row + ghostRow) * boardRowHeight;
+                    float x1 = (column + 1 + ghostColumn) * boardColumnWidth;
+                    float y1 = (row + 1 + ghostRow) * boardRowHeight;
+                    cellAtlas.drawGhostCell(canvas, shapeMatrix[row][column], x0, y0, x1, y1);
                 }
             }
         }
     }
 
     /**
-     * Checa si hay lineas completas para borrar.
+     * Dibuja los tetrominos acumlados en el tablero de la copia.
      * 
-     * @return la lista con los indicies de las filas completas o una lista vacia.
+     * @param canvas un Canvas donde dibujar.
      */
-    private ArrayList<Integer> lookForCompletedLines() {
-        ArrayList<Integer> rowsToClear = new ArrayList<>(4);
-        for (int row = 0; row < boardMatrix.length; row++) {
-            boolean isComplete = true;
-            for (int color : boardMatrix[row]) {
-                if (color == android.R.color.transparent) {
-                    isComplete = false;
-                    break;
-                }
-            }
+    protected void drawBoardMatrix(Canvas canvas) {
+        if (boardLayer != null) canvas.drawBitmap(boardLayer, 0, 0, null);
+        else drawBoardRows(canvas, 0, getBoard().getRows() - 1);
+    }
 
-            if (isComplete) rowsToClear.add(row);
+    /**
+     * Vuelve a dibujar en el Bitmap del tablero solo las filas que cambiaron en la copia que se
+     * acaba de tomar, así que mientras cae un tetromino no se dibuja ninguna celda acumulada.
+     */
+    private void updateBoardLayer() {
+        if (boardLayer != null && snapshot.hasDirtyRows()) {
+            int topRow = snapshot.getDirtyTopRow();
+            int bottomRow = snapshot.getDirtyBottomRow();
+            boardLayerCanvas.drawRect(0, topRow * boardRowHeight, boardLayer.getWidth(), (bottomRow + 1) * boardRowHeight, clearForeground);
+            // Los bordes de las filas vecinas se salen un poco y también se borraron
+            drawBoardRows(boardLayerCanvas, Math.max(topRow - 1, 0), Math.min(bottomRow + 1, getBoard().getRows() - 1));
         }
-
-        return rowsToClear;
     }
 
-    /** Limpia las lineas completas y baja las lineas arriba de las lineas completas. */
-    private void clearAnyCompletedLines() {
-        ArrayList<Integer> rowsToClear = lookForCompletedLines();
-        if (!rowsToClear.isEmpty()) {
-            for (int rowToClear : rowsToClear) {
-                for (int row = rowToClear; row >= 0; row--) {
-                    boardMatrix[row] = new int[boardMatrix[row].length];
-                    if (row == 0) Arrays.fill(boardMatrix[0], android.R.color.transparent);
-                    else System.arraycopy(boardMatrix[row - 1], 0, boardMatrix[row], 0, boardMatrix[row].length);
+    /**
+     * Dibuja las celdas ocupadas de un rango de filas del tablero.
+     * 
+     * @param canvas un Canvas donde dibujar.
+     * @param fromRow la primera fila a dibujar.
+     * @param toRow la última fila a dibujar.
+     */
+    private void drawBoardRows(Canvas canvas, int fromRow, int toRow) {
+        Board board = snapshot.getBoard();
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int column = 0; column < board.getColumns(); column++) {
+                if (!board.isEmpty(row, column)) {
+                    float x0 = column * boardColumnWidth;
+                    float y0 = row * boardRowHeight;
+                    float x1 = (column + 1) * boardColumnWidth;
+                    float y1 = (row + 1) * boardRowHeight;
+                    cellAtlas.drawCell(canvas, board.get(row, column), x0, y0, x1, y1);
                 }
             }
-
-            play(LINE_CLEAR_SOUND);
-            if (pointsAwardedListener != null) pointsAwardedListener.onClearedLines(rowsToClear.size());
         }
     }
 
-    /** Detiene la caida del tetromino actual si esta callendo. */
+    /**
+     * Detiene la caida del tetromino actual si esta callendo y descarta la entrada pendiente para
+     * que no llegue al juego siguiente. Se ejecuta con el candado de las reglas del juego.
+     */
     private void stopDropingTaskIfNeeded() {
-        if (moveDownCurrentTetrominoTask != null && 
-                moveDownCurrentTetrominoTask.getStatus() == AsyncTask.Status.RUNNING) {
-            moveDownCurrentTetrominoTask.cancel(true);
-            moveDownCurrentTetrominoTask = null;
-        }
+        gameLoop.stop();
+        inputQueue.clear();
+        keyRepeater.releaseAll();
     }
 
-    /** Inicia la caida del tetromino actual. */
-    private void startDropingTask(long speed) {
-        moveDownCurrentTetrominoTask = new MoveDownCurrentTetrominoTask();
-        moveDownCurrentTetrominoTask.execute(speed);
+    /** Inicia la caida del tetromino actual a la velocidad del nivel. */
+    private void startDropingTask() {
+        gameLoop.setTickInterval(gameEngine.getGravityNanos());
+        gameLoop.start();
     }
 
-    /** @return si los sonidos estan habilitados o no la configuración. */
-    private boolean isSoundEnabled() {
-        if (!isInEditMode()) {
-            return PreferenceManager.getDefaultSharedPreferences(getContext())
-                    .getBoolean(
-                            getContext().getString(R.string.sounds_switch_key), 
-                            getContext().getResources().getBoolean(R.bool.default_sounds_switch_value));
-        }
-
-        return false;
+    /** @return la copia del juego que se esta dibujando; solo se usa en el hilo principal. */
+    GameSnapshot getSnapshot() {
+        return snapshot;
     }
 
-    /** @return el objeto Random. */
-    public Random getRandom() {
-        if (random == null) random = new Random();
-        return random;
+    /** @return el tablero con los tetrominos acumulados. */
+    public Board getBoard() {
+        return gameEngine.getBoard();
     }
 
     /**
-     * Reproduce el sonido asociado con el id del sonido proporcionado.
-     * 
-     * @param sound el id del sonido a reproducir.
+     * @return las reglas del juego que dibuja este tablero; el hilo del juego las cambia, así que
+     *         fuera de esta vista se deben usar dentro de un bloque sincronizado con ellas.
      */
-    private void play(int sound) {
-        if (isSoundEnabled()) soundPool.play(soundPoolMap.get(sound), 1f, 1f, 1, 0, 1f);
-    }
-
-    /** @return la matriz del tablero. */
-    public int[][] getBoardMatrix() {
-        return boardMatrix;
+    public GameEngine getGameEngine() {
+        return gameEngine;
     }
 
     /** @return la altura de las filas del tablero. */
@@ -388,33 +882,41 @@ public class GameBoardView extends View {
         return boardColumnWidth;
     }
 
+    /** @return cuántos milisegundos pasaron entre el último toque o tecla y su movimiento. */
+    public long getLastInputLatencyMillis() {
+        return lastInputLatencyMillis;
+    }
+
+    /** @return cuántos milisegundos tardó el movimiento más atrasado desde que se creó la vista. */
+    public long getMaxInputLatencyMillis() {
+        return maxInputLatencyMillis;
+    }
+
     /** @return si el juego esta pausado o no. */
     public boolean isPaused() {
-        return isPaused;
+        synchronized (gameEngine) {
+            return gameEngine.isPaused();
+        }
     }
 
     /** @return si el juego esta detenido o no. */
     public boolean isStopped() {
-        return moveDownCurrentTetrominoTask == null || 
-                moveDownCurrentTetrominoTask.getStatus() != AsyncTask.Status.RUNNING;
+        return !gameLoop.isRunning();
     }
 
     /** @return si el juego termino finalizo o no. */
     public boolean isGameOver() {
-        return isGameOver;
+        synchronized (gameEngine) {
+            return gameEngine.isGameOver();
+        }
     }
 
     public boolean isGameStarted() {
-        return isGameStarted;
+        synchronized (gameEngine) {
+            return gameEngine.isGameStarted();
+        }
     }
     
-    protected Paint getTetrominoBorder() {
-        return tetrominoBorder;
-    }
-
-    protected Paint getTetrominoForeground() {
-        return tetrominoForeground;
-    }
     
     /**
      * Inicia el juego.
@@ -423,55 +925,69 @@ public class GameBoardView extends View {
      *         termindo.
      */
     public void startGame() {
-        if (isGameStarted) throw new IllegalStateException("Game is already started!!");
-        if (isGameOver) throw new IllegalStateException("Call GameBoardView.restartGame()!!");
-        setUpNewTetrominos();
-        startDropingTask(currentSpeed);
-        isGameStarted = true;
-        invalidate();
+        synchronized (gameEngine) {
+            gameEngine.start();
+            startDropingTask();
+            requestFullFrame();
+            publishFrame();
+        }
     }
 
     /** Pausa el juego. */
     public void pauseGame() {
-        if (!isGameOver && !isPaused) {
-            isPaused = true;
-            play(PAUSE_SOUND);
+        synchronized (gameEngine) {
+            if (!isGameOver() && !isPaused()) {
+                gameEngine.pause();
+                gameLoop.pause();
+                // Lo que se pidió antes de pausar no se debe ejecutar al reanudar
+                inputQueue.clear();
+                keyRepeater.releaseAll();
+                soundEffects.play(SoundEffects.PAUSE_SOUND);
+            }
         }
     }
 
     /** Reanuda el juego. */
     public void resumeGame() {
-        if (!isGameOver && isPaused) {
-            isPaused = false;
-            play(PAUSE_SOUND);
+        synchronized (gameEngine) {
+            if (!isGameOver() && isPaused()) {
+                gameEngine.resume();
+                gameLoop.resume();
+                soundEffects.play(SoundEffects.PAUSE_SOUND);
+            }
         }
     }
 
     /** Detiene el juego y debe llamarse a {@link #restartGame()} para reiniciar el juego. */
     public void stopGame() {
-        stopDropingTaskIfNeeded();
-        isGameStarted = false;
+        synchronized (gameEngine) {
+            stopDropingTaskIfNeeded();
+            gameEngine.stop();
+        }
     }
 
     /** Reinicia el juego. */
     public void restartGame() {
-        isPaused = false;
-        isGameOver = false;
-        isGameStarted = false;
-        stopDropingTaskIfNeeded();
-        setInitialLevel(initialLevel);
-        setUpBoardMatrix();
-        startGame();
+        synchronized (gameEngine) {
+            stopDropingTaskIfNeeded();
+            gameEngine.restart();
+            startDropingTask();
+            requestFullFrame();
+            publishFrame();
+        }
     }
 
     /** @return el tetromino en juego. */
     public Tetromino getCurrentTetromino() {
-        return currentTetromino;
+        return gameEngine.getCurrentTetromino();
     }
 
-    /** @return el siguiente tetromino en caer. */
+    /**
+     * @return el siguiente tetromino en caer; se reutiliza para otra pieza cuando sale, así que
+     *         no se debe guardar.
+     */
     public Tetromino getNextTetromino() {
-        return nextTetromino;
+        return gameEngine.getNextTetromino();
     }
 
     /**
@@ -480,27 +996,53 @@ public class GameBoardView extends View {
      * @param level {@link #DEFAULT_LEVEL} <= level <= {@link #MAX_LEVEL}.
      */
     public void setInitialLevel(int level) {
-        initialLevel = level <= DEFAULT_LEVEL ? DEFAULT_LEVEL : level >= MAX_LEVEL ? MAX_LEVEL : level;
-        currentSpeed = DEFAULT_SPEED;
-        for (int i = 0; i < initialLevel; i++) currentSpeed -= currentSpeed / SPEED_FACTOR;
+        synchronized (gameEngine) {
+            gameEngine.setInitialLevel(level);
+        }
     }
 
     /** @return el nivel inicial del juego. */
     public int getInitialLevel() {
-        return initialLevel;
+        synchronized (gameEngine) {
+            return gameEngine.getInitialLevel();
+        }
+    }
+
+    /**
+     * Cambia cuántas figuras se pueden ver por adelantado.
+     * 
+     * @param previewSize 1 <= previewSize <= {@link GameEngine#MAX_PREVIEW_SIZE}.
+     */
+    public void setPreviewSize(int previewSize) {
+        synchronized (gameEngine) {
+            gameEngine.setPreviewSize(previewSize);
+        }
+    }
+
+    /**
+     * Copia las figuras que van a caer, empezando por la del siguiente tetromino.
+     * 
+     * @param shapes donde copiar las figuras.
+     * @return cuántas figuras se copiaron.
+     */
+    public int getUpcomingShapes(Shape[] shapes) {
+        synchronized (gameEngine) {
+            return gameEngine.getUpcomingShapes(shapes);
+        }
     }
 
     /** Aumenta la velocidad y el nivel de juego. */
     public void levelUp() {
-        currentSpeed -= currentSpeed / SPEED_FACTOR;
-        play(LEVEL_UP_SOUND);
-        stopDropingTaskIfNeeded();
-        startDropingTask(currentSpeed);
+        synchronized (gameEngine) {
+            gameEngine.levelUp();
+        }
     }
 
     /** @return la velocidad del juego actual. */
     public long getCurrentSpeed() {
-        return currentSpeed;
+        synchronized (gameEngine) {
+            return gameEngine.getCurrentSpeed();
+        }
     }
 
     /**
@@ -533,11 +1075,12 @@ public class GameBoardView extends View {
     public static interface OnCommingNextTetrominoListener {
 
         /**
-         * Ejecuta este método cuando se genera el siguente tetromino.
+         * Ejecuta este método cuando se genera el siguente tetromino. El tetromino se reutiliza
+         * para las siguientes piezas, por eso solo se pasa su figura, que no cambia.
          * 
-         * @param nextTetromino el siguente tetromino en caer.
+         * @param nextShape la figura del siguente tetromino en caer.
          */
-        void onCommingNextTetromino(Tetromino nextTetromino);
+        void onCommingNextTetromino(Shape nextShape);
     }
 
     /**
@@ -584,141 +1127,163 @@ public class GameBoardView extends View {
     }
 
     /**
-     * Cancela gestos, actualiza la matriz, limpia las lineas completas y reproduce
-     * {@link #DROP_SOUND}.
+     * Escucha los eventos de las reglas del juego para redibujar el tablero, reproducir sonidos y
+     * avisar a los listeners de esta vista. Los eventos llegan casi siempre en el hilo del juego,
+     * así que los listeners se ejecutan en el hilo principal con {@link #post(Runnable)}.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since 1.3
      */
-    protected void onCurrentTetrominoOnFloor() {
-        updateBoardMatrix();
-        clearAnyCompletedLines();
-        invalidate();
-        play(DROP_SOUND);
-    }
+    protected class GameEventListener extends GameEngine.SimpleOnGameEventListener {
 
-    protected void onTetrominoMoved() {
-        invalidate();
-    }
+        @Override
+        public void onTetrominoMoved() {
+            requestFrame();
+        }
 
-    protected void onTetrominoRotated() {
-        invalidate();
-        play(ROTATE_SOUND);
-    }
+        @Override
+        public void onTetrominoRotated() {
+            requestFrame();
+            soundEffects.play(SoundEffects.ROTATE_SOUND);
+        }
+
+        @Override
+        public void onTetrominoLocked() {
+            requestFrame();
+            soundEffects.play(SoundEffects.DROP_SOUND);
+        }
+
+        @Override
+        public void onClearedLines(final int linesCleared) {
+            requestFullFrame();
+            soundEffects.play(SoundEffects.LINE_CLEAR_SOUND);
+            post(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (pointsAwardedListener != null) pointsAwardedListener.onClearedLines(linesCleared);
+                }
+            });
+        }
+
+        @Override
+        public void onHardDropped(final int gridSpaces) {
+            post(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (pointsAwardedListener != null) pointsAwardedListener.onHardDropped(gridSpaces);
+                }
+            });
+        }
+
+        @Override
+        public void onSoftDropped(final int gridSpaces) {
+            // El arrastre que bajó el tetromino hasta el tablero ya no sigue bajando el siguiente;
+            // se ejecuta en el hilo del juego, igual que el comando que empieza otro gesto
+            isSoftDropLocked = true;
+            post(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (pointsAwardedListener != null) pointsAwardedListener.onSoftDropped(gridSpaces);
+                }
+            });
+        }
+
+        @Override
+        public void onCommingNextTetromino(final Shape nextShape) {
+            post(new Runnable() {
 
-    /** Move el tetromino hasta el suelo del tablero en un tiempo. */
-    private void hardDropCurrentTetromino() {
-        int gridSpaces;
-        for (gridSpaces = 0; currentTetromino.moveTo(Tetromino.Direction.DOWN); gridSpaces++);
-        if (pointsAwardedListener != null) pointsAwardedListener.onHardDropped(gridSpaces);
-        onCurrentTetrominoOnFloor();
-        setUpNewTetrominos();
+                @Override
+                public void run() {
+                    if (commingNextTetrominoListener != null) commingNextTetrominoListener.onCommingNextTetromino(nextShape);
+                }
+            });
+        }
+
+        @Override
+        public void onLevelUp() {
+            soundEffects.play(SoundEffects.LEVEL_UP_SOUND);
+            gameLoop.setTickInterval(gameEngine.getGravityNanos());
+        }
+
+        @Override
+        public void onGameOver() {
+            stopDropingTaskIfNeeded();
+            requestFullFrame();
+            soundEffects.play(SoundEffects.GAME_OVER_SOUND);
+            post(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (gameOverListener != null) gameOverListener.onGameOver();
+                }
+            });
+        }
     }
 
     /**
-     * Tarea que lleva la cuenta de la velocidad de caida del tetromino en juego.
+     * Pide los cuadros a {@link Choreographer} para dibujar justo con la sincronía vertical de la
+     * pantalla. Es una clase aparte para que en versiones anteriores a la API 16 nunca se cargue.
      * 
      * @author Daniel Pedraza-Arcega
-     * @since 1.0
+     * @since 1.3
      */
-    private class MoveDownCurrentTetrominoTask extends AsyncTask<Long, Void, Void> {
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class VsyncFrameCallback implements Choreographer.FrameCallback {
 
-        @Override
-        protected Void doInBackground(Long... params) {
-            while (!isCancelled()) {
-                try {
-                    Thread.sleep(params[0]);
-                    publishProgress();
-                } catch (InterruptedException e) {
-                    // Se ignora y si no se ha cancelado esta tarea volverá a
-                    // intentar dormir.
-                }
-            }
+        private final Choreographer choreographer;
+        private final GameBoardView view;
+
+        /** @param view quien dibuja cada cuadro; debe crearse en el hilo principal. */
+        VsyncFrameCallback(GameBoardView view) {
+            this.view = view;
+            choreographer = Choreographer.getInstance();
+        }
+
+        /** Pide el siguiente cuadro. */
+        void postFrame() {
+            choreographer.postFrameCallback(this);
+        }
 
-            return null;
+        /** Cancela el cuadro pedido. */
+        void cancel() {
+            choreographer.removeFrameCallback(this);
         }
 
         @Override
-        protected void onProgressUpdate(Void... values) {
-            if (!isPaused && !isGameOver) {
-                if (!currentTetromino.moveTo(Tetromino.Direction.DOWN)) {
-                    onCurrentTetrominoOnFloor();
-                    setUpNewTetrominos();
-                } else invalidate();
-            }
+        public void doFrame(long frameTimeNanos) {
+            view.drawFrame(frameTimeNanos);
         }
     }
 
     /**
-     * Escucha los eventos del tablero para mover el tetromino en juego.
+     * Escucha los toques del tablero y los mete a la {@link InputQueue} como comandos para rotar
+     * o dejar caer el tetromino en juego; el arrastre lo sigue el {@link SwipeTracker}.
      * 
      * @author Daniel Pedraza-Arcega
      * @since 1.0
      */
     protected class GestureListener extends GestureDetector.SimpleOnGestureListener {
 
-        private boolean shouldStopScrollEvent;
-        private int softDropGridSpaces;
-        private float totalDistanceX;
-        private float totalDistanceY;
-
-        @Override // TODO: Reducir la complejidad ciclomática de este método
-        public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
-            if (isGameStarted && !isPaused && !isGameOver && !shouldStopScrollEvent) {
-                // Scroll a los lados
-                if (Math.abs(distanceX) > Math.abs(distanceY)) {
-                    totalDistanceX += distanceX;
-                    // Derecha
-                    if (distanceX < 0) {
-                        if (Math.abs(totalDistanceX) >= boardColumnWidth) {
-                            totalDistanceX = 0;
-                            if (currentTetromino.moveTo(Tetromino.Direction.RIGHT)) onTetrominoMoved();
-                        }
-                        // Izquierda
-                    } else {
-                        if (Math.abs(totalDistanceX) >= boardColumnWidth) {
-                            totalDistanceX = 0;
-                            if (currentTetromino.moveTo(Tetromino.Direction.LEFT)) onTetrominoMoved();
-                        }
-                    }
-                    // Scroll hacia abajo
-                } else if (distanceY < 0) {
-                    totalDistanceY += distanceY;
-                    if (Math.abs(totalDistanceY) >= boardRowHeight) {
-                        totalDistanceY = 0;
-                        // Si no puede continuar abajo significa que bajo en modo SoftDrop
-                        if (!currentTetromino.moveTo(Tetromino.Direction.DOWN)) {
-                            shouldStopScrollEvent = true;
-                            onCurrentTetrominoOnFloor();
-                            setUpNewTetrominos();
-                            if (pointsAwardedListener != null) pointsAwardedListener.onSoftDropped(softDropGridSpaces);
-                        } else {
-                            onTetrominoMoved();
-                            softDropGridSpaces++;
-                        }
-                    }
-                }
-            }
-
-            return true;
-        }
-
         @Override
         public boolean onSingleTapUp(MotionEvent e) {
-            if (isGameStarted && !isPaused && !isGameOver) {
-                if (currentTetromino.rotate()) onTetrominoRotated();
-            }
-
+            sendInput(InputQueue.ROTATE, e.getEventTime());
             return true;
         }
 
         @Override
         public void onLongPress(MotionEvent e) {
-            if (isGameStarted && !isPaused && !isGameOver) hardDropCurrentTetromino();
+            // Igual que el GestureDetector, después de un toque largo ya no se arrastra
+            swipeTracker.stop();
+            sendInput(InputQueue.HARD_DROP, e.getEventTime());
         }
 
         @Override
         public boolean onDown(MotionEvent e) {
-            shouldStopScrollEvent = false;
-            softDropGridSpaces = 0;
+            sendInput(InputQueue.RESET_SOFT_DROP, e.getEventTime());
             return true;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,545 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+/**
+ * Reglas del juego sin depender de ninguna vista: el tablero, el tetromino en juego, el siguiente
+ * en cola, la caída, las lineas completas y los niveles. Las vistas solo dibujan su estado y le
+ * mandan comandos, por lo que también puede correr en una JVM sin Android.
+ *
+ * @author Daniel Pedraza-Arcega
+ * @since 1.3
+ */
+public class GameEngine {
+
+    public static final int DEFAULT_LEVEL = 0;
+    public static final int MAX_LEVEL = 9;
+    public static final int DEFAULT_COLUMNS = 10;
+    public static final int DEFAULT_ROWS = 20;
+    public static final int DEFAULT_PREVIEW_SIZE = 1;
+    public static final int MAX_PREVIEW_SIZE = 6;
+
+    private static final long DEFAULT_GRAVITY_NANOS = 1000000000L;
+    private static final long NANOS_PER_MILLI = 1000000L;
+    private static final int SPEED_FACTOR = 6;
+    private static final TetrominoShape[] SHAPES = TetrominoShape.values();
+
+    private final Board board;
+    private Tetromino currentTetromino;
+    private Tetromino nextTetromino;
+    private int initialLevel;
+    private int softDropGridSpaces;
+    private long gravityNanos;
+    private boolean isPaused;
+    private boolean isGameOver;
+    private boolean isGameStarted;
+    private Randomizer randomizer;
+    private int[] upcomingShapes;
+    private int upcomingHead;
+    private int upcomingCount;
+    private OnGameEventListener gameEventListener;
+
+    /** Construye un juego con un tablero de {@link #DEFAULT_ROWS}x{@link #DEFAULT_COLUMNS}. */
+    public GameEngine() {
+        this(DEFAULT_ROWS, DEFAULT_COLUMNS);
+    }
+
+    /**
+     * Construye un juego con un tablero de las dimensiones dadas.
+     *
+     * @param rows el número de filas del tablero.
+     * @param columns el número de columnas del tablero.
+     */
+    public GameEngine(int rows, int columns) {
+        board = new Board(rows, columns);
+        gravityNanos = DEFAULT_GRAVITY_NANOS;
+        initialLevel = DEFAULT_LEVEL;
+        upcomingShapes = new int[DEFAULT_PREVIEW_SIZE - 1];
+    }
+
+    /**
+     * Inicia el juego.
+     *
+     * @throws IllegalStateException cuando el juego ya ha sido iniciado o cuando el juego ha
+     *         termindo.
+     */
+    public void start() {
+        if (isGameStarted) throw new IllegalStateException("Game is already started!!");
+        if (isGameOver) throw new IllegalStateException("Call GameEngine.restart()!!");
+        isGameStarted = true;
+        softDropGridSpaces = 0;
+        setUpNewTetrominos();
+    }
+
+    /** Pausa el juego. */
+    public void pause() {
+        if (!isGameOver && !isPaused) isPaused = true;
+    }
+
+    /** Reanuda el juego. */
+    public void resume() {
+        if (!isGameOver && isPaused) isPaused = false;
+    }
+
+    /** Detiene el juego y debe llamarse a {@link #restart()} para reiniciar el juego. */
+    public void stop() {
+        isGameStarted = false;
+    }
+
+    /** Reinicia el juego. */
+    public void restart() {
+        isPaused = false;
+        isGameOver = false;
+        isGameStarted = false;
+        setInitialLevel(initialLevel);
+        board.clear();
+        start();
+    }
+
+    /**
+     * Mueve el tetromino en juego un lugar hacia abajo; si ya no puede bajar lo deja en el tablero
+     * y pasa al siguiente tetromino.
+     */
+    public void tick() {
+        if (isPlaying()) {
+            if (!currentTetromino.moveTo(Tetromino.Direction.DOWN)) {
+                lockCurrentTetromino();
+                setUpNewTetrominos();
+            } else if (gameEventListener != null) gameEventListener.onTetrominoMoved();
+        }
+    }
+
+    /** @return si se pudo mover o no el tetromino en juego hacia la izquierda. */
+    public boolean moveLeft() {
+        return move(Tetromino.Direction.LEFT);
+    }
+
+    /** @return si se pudo mover o no el tetromino en juego hacia la derecha. */
+    public boolean moveRight() {
+        return move(Tetromino.Direction.RIGHT);
+    }
+
+    /** @return si se pudo rotar o no el tetromino en juego. */
+    public boolean rotate() {
+        if (isPlaying() && currentTetromino.rotate()) {
+            onCurrentTetrominoRotated();
+            if (gameEventListener != null) gameEventListener.onTetrominoRotated();
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Se ejecuta después de rotar el tetromino en juego y antes de avisar al listener, así el
+     * listener ya ve lo que cambie aquí.
+     */
+    protected void onCurrentTetrominoRotated() { }
+
+    /**
+     * Baja el tetromino en juego un lugar más rápido que la velocidad del nivel. Si ya no puede
+     * bajar lo deja en el tablero, otorga los puntos de los espacios recorridos y pasa al
+     * siguiente tetromino.
+     *
+     * @return si se pudo bajar o no.
+     */
+    public boolean softDrop() {
+        if (!isPlaying()) return false;
+        if (currentTetromino.moveTo(Tetromino.Direction.DOWN)) {
+            softDropGridSpaces++;
+            if (gameEventListener != null) gameEventListener.onTetrominoMoved();
+            return true;
+        }
+
+        int gridSpaces = softDropGridSpaces;
+        lockCurrentTetromino();
+        setUpNewTetrominos();
+        if (gameEventListener != null) gameEventListener.onSoftDropped(gridSpaces);
+        return false;
+    }
+
+    /**
+     * Vuelve a contar desde cero los espacios que baja el tetromino en modo SoftDrop. Las vistas
+     * lo llaman al empezar cada gesto, así que los puntos son de los espacios del último gesto
+     * aunque el tetromino haya cambiado a media caída, como desde la versión 1.0.
+     */
+    public void resetSoftDrop() {
+        softDropGridSpaces = 0;
+    }
+
+    /** Mueve el tetromino hasta el suelo del tablero en un tiempo. */
+    public void hardDrop() {
+        if (isPlaying()) {
+            int gridSpaces = currentTetromino.drop();
+            if (gameEventListener != null) gameEventListener.onHardDropped(gridSpaces);
+            lockCurrentTetromino();
+            setUpNewTetrominos();
+        }
+    }
+
+    /** Aumenta la velocidad y el nivel de juego. */
+    public void levelUp() {
+        gravityNanos -= gravityNanos / SPEED_FACTOR;
+        if (gameEventListener != null) gameEventListener.onLevelUp();
+    }
+
+    /**
+     * @param direction {@link Tetromino.Direction#LEFT} o {@link Tetromino.Direction#RIGHT}.
+     * @return si se pudo mover o no el tetromino en juego.
+     */
+    private boolean move(Tetromino.Direction direction) {
+        if (isPlaying() && currentTetromino.moveTo(direction)) {
+            if (gameEventListener != null) gameEventListener.onTetrominoMoved();
+            return true;
+        }
+
+        return false;
+    }
+
+    /** @return si el juego esta corriendo y acepta comandos. */
+    private boolean isPlaying() {
+        return isGameStarted && !isPaused && !isGameOver;
+    }
+
+    /**
+     * Inicializa el tetromino actual, lo centra en el tablero e inicializa el próximo tetromino en
+     * cola. Si no puede centrar el tetromino actual, el juego habrá terminado.
+     */
+    protected void setUpNewTetrominos() {
+        if (nextTetromino == null) {
+            currentTetromino = randomTetromino();
+            nextTetromino = randomTetromino();
+        } else {
+            Tetromino lockedTetromino = currentTetromino;
+            currentTetromino = nextTetromino;
+            nextTetromino = lockedTetromino;
+            reuseAsRandomTetromino(nextTetromino);
+        }
+        if (gameEventListener != null) gameEventListener.onCommingNextTetromino(nextTetromino.getShape());
+        if (!currentTetromino.centerOnBoard()) onGameOver();
+    }
+
+    /** @return tetromino con la figura predefinida que escoja el {@link Randomizer}. */
+    protected Tetromino randomTetromino() {
+        return new Tetromino.Builder(board).use(SHAPES[nextShapeIndex()]).build();
+    }
+
+    /**
+     * Cambia la figura de un tetromino que ya no esta en juego por la que escoja el
+     * {@link Randomizer}, para que salga una pieza nueva sin crear objetos.
+     * 
+     * @param tetromino el tetromino a reutilizar.
+     */
+    protected void reuseAsRandomTetromino(Tetromino tetromino) {
+        TetrominoShape shape = SHAPES[nextShapeIndex()];
+        tetromino.reset(shape, shape.getRotations());
+    }
+
+    /**
+     * Saca de la cola la figura que sigue después del siguiente tetromino y mete otra del
+     * {@link Randomizer} al final, así la cola sale en el mismo orden en que la escoge.
+     * 
+     * @return el índice de la figura para el siguiente tetromino.
+     */
+    protected int nextShapeIndex() {
+        if (upcomingShapes.length == 0) return getRandomizer().next();
+        fillUpcomingShapes();
+        int shapeIndex = upcomingShapes[upcomingHead];
+        upcomingHead = (upcomingHead + 1) % upcomingShapes.length;
+        upcomingCount--;
+        fillUpcomingShapes();
+        return shapeIndex;
+    }
+
+    /** Llena la cola de figuras hasta su capacidad. */
+    private void fillUpcomingShapes() {
+        while (upcomingCount < upcomingShapes.length) {
+            upcomingShapes[(upcomingHead + upcomingCount) % upcomingShapes.length] = getRandomizer().next();
+            upcomingCount++;
+        }
+    }
+
+    /**
+     * @param shapeIndex el índice que regresa el {@link Randomizer}.
+     * @return la figura de ese índice.
+     */
+    protected Shape shapeAt(int shapeIndex) {
+        return SHAPES[shapeIndex];
+    }
+
+    /**
+     * @return un {@link Randomizer.NoTriple} con las figuras de este juego, la regla que ha
+     *         tenido el juego desde el inicio.
+     */
+    protected Randomizer createDefaultRandomizer() {
+        return new Randomizer.NoTriple(SHAPES.length, System.nanoTime());
+    }
+
+    /** Termina el juego y ejecuta {@link OnGameEventListener#onGameOver()}. */
+    private void onGameOver() {
+        isGameOver = true;
+        isGameStarted = false;
+        if (gameEventListener != null) gameEventListener.onGameOver();
+    }
+
+    /**
+     * Deja el tetromino actual en el tablero, limpia las lineas completas y ejecuta
+     * {@link OnGameEventListener#onTetrominoLocked()}.
+     */
+    protected void lockCurrentTetromino() {
+        updateBoardMatrix();
+        clearAnyCompletedLines();
+        if (gameEventListener != null) gameEventListener.onTetrominoLocked();
+    }
+
+    /** Actualiza la matriz del tablero con los valores del tetromino actual. */
+    private void updateBoardMatrix() {
+        board.place(currentTetromino.getIndexMatrix(), currentTetromino.getShapeRowMasks(),
+                currentTetromino.getPosition().getBoardMatrixRow(), currentTetromino.getPosition().getBoardMatrixColumn());
+    }
+
+    /**
+     * Limpia las lineas completas y baja las lineas arriba de las lineas completas. Solo pueden
+     * completarse las filas que ocupa el tetromino actual, así que solo esas se revisan.
+     */
+    private void clearAnyCompletedLines() {
+        int fromRow = currentTetromino.getPosition().getBoardMatrixRow();
+        int toRow = fromRow + currentTetromino.getShapeMatrix().length - 1;
+        int completedRows = board.findCompletedRows(fromRow, toRow);
+        if (completedRows != 0) {
+            int linesCleared = board.clearRows(fromRow, completedRows);
+            if (gameEventListener != null) gameEventListener.onClearedLines(linesCleared);
+        }
+    }
+
+    /**
+     * Cambia el nivel inicial del juego.
+     *
+     * @param level {@link #DEFAULT_LEVEL} <= level <= {@link #MAX_LEVEL}.
+     */
+    public void setInitialLevel(int level) {
+        initialLevel = level <= DEFAULT_LEVEL ? DEFAULT_LEVEL : level >= MAX_LEVEL ? MAX_LEVEL : level;
+        gravityNanos = DEFAULT_GRAVITY_NANOS;
+        for (int i = 0; i < initialLevel; i++) gravityNanos -= gravityNanos / SPEED_FACTOR;
+    }
+
+    /** @return el nivel inicial del juego. */
+    public int getInitialLevel() {
+        return initialLevel;
+    }
+
+    /** @return la velocidad del juego actual en milisegundos por fila. */
+    public long getCurrentSpeed() {
+        return gravityNanos / NANOS_PER_MILLI;
+    }
+
+    /** @return la velocidad del juego actual en nanosegundos por fila. */
+    public long getGravityNanos() {
+        return gravityNanos;
+    }
+
+    /**
+     * Copia el estado que hace falta para dibujar el juego, para que otro hilo lo dibuje sin
+     * tocar el tablero. Quien llama debe tener el mismo candado que quien mueve el juego.
+     *
+     * @param snapshot donde copiar el estado.
+     */
+    void capture(GameSnapshot snapshot) {
+        snapshot.capture(board, currentTetromino);
+    }
+
+    /** @return el tablero con los tetrominos acumulados. */
+    public Board getBoard() {
+        return board;
+    }
+
+    /** @return el tetromino en juego. */
+    public Tetromino getCurrentTetromino() {
+        return currentTetromino;
+    }
+
+    /**
+     * @return el siguiente tetromino en caer. Cuando sale el siguiente se reutiliza para otra
+     *         pieza, así que no se debe guardar.
+     */
+    public Tetromino getNextTetromino() {
+        return nextTetromino;
+    }
+
+    /**
+     * Cambia cuántas figuras se pueden ver por adelantado; las que ya estaban en la cola se
+     * conservan en orden.
+     * 
+     * @param previewSize 1 <= previewSize <= {@link #MAX_PREVIEW_SIZE}; 1 es solo el siguiente
+     *        tetromino.
+     */
+    public void setPreviewSize(int previewSize) {
+        previewSize = previewSize <= 1 ? 1 : previewSize >= MAX_PREVIEW_SIZE ? MAX_PREVIEW_SIZE : previewSize;
+        int[] newUpcomingShapes = new int[previewSize - 1];
+        int newCount = Math.min(upcomingCount, newUpcomingShapes.length);
+        for (int i = 0; i < newCount; i++) newUpcomingShapes[i] = upcomingShapes[(upcomingHead + i) % upcomingShapes.length];
+        upcomingShapes = newUpcomingShapes;
+        upcomingHead = 0;
+        upcomingCount = newCount;
+        if (nextTetromino != null) fillUpcomingShapes();
+    }
+
+    /** @return cuántas figuras se pueden ver por adelantado. */
+    public int getPreviewSize() {
+        return upcomingShapes.length + 1;
+    }
+
+    /**
+     * Copia las figuras que van a caer, empezando por la del siguiente tetromino.
+     * 
+     * @param shapes donde copiar las figuras; se copian hasta {@link #getPreviewSize()}.
+     * @return cuántas figuras se copiaron.
+     */
+    public int getUpcomingShapes(Shape[] shapes) {
+        if (nextTetromino == null || shapes.length == 0) return 0;
+        shapes[0] = nextTetromino.getShape();
+        int count = Math.min(shapes.length, upcomingCount + 1);
+        for (int i = 1; i < count; i++) shapes[i] = shapeAt(upcomingShapes[(upcomingHead + i - 1) % upcomingShapes.length]);
+        return count;
+    }
+
+    /** @return si el juego esta pausado o no. */
+    public boolean isPaused() {
+        return isPaused;
+    }
+
+    /** @return si el juego termino finalizo o no. */
+    public boolean isGameOver() {
+        return isGameOver;
+    }
+
+    /** @return si el juego ya fue iniciado o no. */
+    public boolean isGameStarted() {
+        return isGameStarted;
+    }
+
+    /** @return la estrategia con la que se escogen las figuras. */
+    public Randomizer getRandomizer() {
+        if (randomizer == null) randomizer = createDefaultRandomizer();
+        return randomizer;
+    }
+
+    /**
+     * Cambia la estrategia con la que se escogen las figuras, por ejemplo para usar una bolsa o
+     * una semilla fija y repetir el mismo juego.
+     *
+     * @param randomizer un Randomizer que escoja entre las figuras de este juego.
+     */
+    public void setRandomizer(Randomizer randomizer) {
+        this.randomizer = randomizer;
+    }
+
+    /** @param gameEventListener el listener que escuchará los eventos del juego. */
+    public void setOnGameEventListener(OnGameEventListener gameEventListener) {
+        this.gameEventListener = gameEventListener;
+    }
+
+    /**
+     * Listener que escuchará los eventos del juego.
+     *
+     * @author Daniel Pedraza-Arcega
+     * @since 1.3
+     */
+    public static interface OnGameEventListener {
+
+        /** Ejecuta este método cuando el tetromino en juego se movió. */
+        void onTetrominoMoved();
+
+        /** Ejecuta este método cuando el tetromino en juego rotó. */
+        void onTetrominoRotated();
+
+        /** Ejecuta este método cuando el tetromino en juego se quedó en el tablero. */
+        void onTetrominoLocked();
+
+        /**
+         * Ejecuta este método cuando hay lineas que se completaron.
+         *
+         * @param linesCleared el numero de lineas completas.
+         */
+        void onClearedLines(int linesCleared);
+
+        /**
+         * Ejecuta este método cuando el tetromino actual cae de golpe al piso.
+         *
+         * @param gridSpaces los espacios recorridos al caer.
+         */
+        void onHardDropped(int gridSpaces);
+
+        /**
+         * Ejecuta este método cuando el tetromino actual cae al piso más rápido que la velocidad
+         * del nivel.
+         *
+         * @param gridSpaces los espacios recorridos al caer.
+         */
+        void onSoftDropped(int gridSpaces);
+
+        /**
+         * Ejecuta este método cuando se genera el siguente tetromino. El tetromino se reutiliza
+         * para las siguientes piezas, por eso solo se pasa su figura, que no cambia.
+         *
+         * @param nextShape la figura del siguente tetromino en caer.
+         */
+        void onCommingNextTetromino(Shape nextShape);
+
+        /** Ejecuta este método cuando sube el nivel del juego. */
+        void onLevelUp();
+
+        /** Ejecuta este método cuando se termina el juego. */
+        void onGameOver();
+    }
+
+    /**
+     * Implementación vacía de {@link OnGameEventListener} para solo sobreescribir los eventos
+     * que interesen.
+     *
+     * @author Daniel Pedraza-Arcega
+     * @since 1.3
+     */
+    public static class SimpleOnGameEventListener implements OnGameEventListener {
+
+        @Override
+        public void onTetrominoMoved() { }
+
+        @Override
+        public void onTetrominoRotated() { }
+
+        @Override
+        public void onTetrominoLocked() { }
+
+        @Override
+        public void onClearedLines(int linesCleared) { }
+
+        @Override
+        public void onHardDropped(int gridSpaces) { }
+
+        @Override
+        public void onSoftDropped(int gridSpaces) { }
+
+        @Override
+        public void onCommingNextTetromino(Shape nextShape) { }
+
+        @Override
+        public void onLevelUp() { }
+
+        @Override
+        public void onGameOver() { }
+    }
+}
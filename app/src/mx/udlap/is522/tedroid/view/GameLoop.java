@@ -0,0 +1,243 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hilo que marca el paso del juego a intervalos fijos. Mide el tiempo con
+ * {@link System#nanoTime()} y acumula el tiempo transcurrido, así que los retrasos de un paso se
+ * compensan en los siguientes en lugar de acumularse, y el intervalo puede cambiar sin reiniciar
+ * el hilo. Mientras esta pausado el hilo no despierta. Otros hilos pueden despertarlo con
+ * {@link #wake()} para que atienda algo, como la entrada del jugador, sin esperar al siguiente paso,
+ * o pedirle con {@link #wakeAt(long)} que despierte a un tiempo dado entre paso y paso.
+ *
+ * @author Daniel Pedraza-Arcega
+ * @since 1.3
+ */
+public class GameLoop {
+
+    /** Máximo de pasos seguidos para ponerse al corriente tras un retraso largo. */
+    private static final int MAX_CATCH_UP_TICKS = 5;
+
+    private final OnTickListener tickListener;
+    private volatile OnWakeListener wakeListener;
+
+    private volatile Thread thread;
+    private volatile long tickIntervalNanos;
+    private volatile boolean isPaused;
+    private volatile boolean isWakeRequested;
+    private volatile boolean isWakeScheduled;
+    private volatile long wakeTimeNanos;
+    private volatile long pauseTime;
+    private volatile long lastLatenessNanos;
+    private volatile long maxLatenessNanos;
+
+    /**
+     * Construye un hilo de juego detenido.
+     *
+     * @param tickIntervalNanos los nanosegundos entre cada paso.
+     * @param tickListener quien recibe cada paso; se ejecuta en el hilo del juego.
+     */
+    public GameLoop(long tickIntervalNanos, OnTickListener tickListener) {
+        this.tickIntervalNanos = tickIntervalNanos;
+        this.tickListener = tickListener;
+    }
+
+    /** Arranca el hilo si no esta corriendo. */
+    public synchronized void start() {
+        if (thread == null) {
+            isPaused = false;
+            lastLatenessNanos = 0L;
+            maxLatenessNanos = 0L;
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    loop();
+                }
+            }, "GameLoop");
+            thread.start();
+        }
+    }
+
+    /** Detiene el hilo; el paso en curso, si lo hay, termina pero ya no habrá otro. */
+    public synchronized void stop() {
+        Thread stoppedThread = thread;
+        thread = null;
+        if (stoppedThread != null) LockSupport.unpark(stoppedThread);
+    }
+
+    /**
+     * Suspende el hilo sin detenerlo. El tiempo que ya había pasado del paso en curso se guarda
+     * para que al reanudar solo falte el resto.
+     */
+    public synchronized void pause() {
+        if (thread != null && !isPaused) {
+            pauseTime = System.nanoTime();
+            isPaused = true;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /** Reanuda el hilo suspendido con {@link #pause()}. */
+    public synchronized void resume() {
+        if (isPaused) {
+            isPaused = false;
+            if (thread != null) LockSupport.unpark(thread);
+        }
+    }
+
+    /** Ciclo del hilo: duerme hasta el siguiente paso y ejecuta los pasos que ya tocan. */
+    private void loop() {
+        Thread currentThread = Thread.currentThread();
+        long previousTime = System.nanoTime();
+        long accumulator = 0L;
+        while (thread == currentThread) {
+            if (isPaused) {
+                long elapsedBeforePause = pauseTime - previousTime;
+                if (elapsedBeforePause > 0L) accumulator += elapsedBeforePause;
+                while (isPaused && thread == currentThread) LockSupport.park(this);
+                previousTime = System.nanoTime();
+                continue;
+            }
+            long now = System.nanoTime();
+            if (isWakeRequested || (isWakeScheduled && now - wakeTimeNanos >= 0L)) {
+                isWakeRequested = false;
+                isWakeScheduled = false;
+                OnWakeListener listener = wakeListener;
+                if (listener != null) listener.onWake();
+                now = System.nanoTime();
+            }
+            accumulator += now - previousTime;
+            previousTime = now;
+            long interval = tickIntervalNanos;
+            if (accumulator >= interval) {
+                lastLatenessNanos = accumulator - interval;
+                if (lastLatenessNanos > maxLatenessNanos) maxLatenessNanos = lastLatenessNanos;
+                int ticks = 0;
+                while (accumulator >= interval && ticks < MAX_CATCH_UP_TICKS && thread == currentThread) {
+                    accumulator -= interval;
+                    tickListener.onTick();
+                    ticks++;
+                }
+                // Si se atrasó demasiado se descarta el resto en lugar de ir cada vez más atrás
+                if (accumulator >= interval) accumulator = 0L;
+            } else {
+                long parkNanos = interval - accumulator;
+                if (isWakeScheduled) parkNanos = Math.min(parkNanos, wakeTimeNanos - now);
+                if (parkNanos > 0L) LockSupport.parkNanos(this, parkNanos);
+            }
+        }
+    }
+
+    /**
+     * Cambia el intervalo entre pasos; el hilo lo toma en su siguiente vuelta sin reiniciarse.
+     *
+     * @param tickIntervalNanos los nanosegundos entre cada paso.
+     */
+    public void setTickInterval(long tickIntervalNanos) {
+        this.tickIntervalNanos = tickIntervalNanos;
+        Thread currentThread = thread;
+        if (currentThread != null) LockSupport.unpark(currentThread);
+    }
+
+    /**
+     * Despierta al hilo para que ejecute {@link OnWakeListener#onWake()} en cuanto pueda, antes
+     * de los pasos que ya toquen. Mientras esta pausado espera a que se reanude.
+     */
+    public void wake() {
+        isWakeRequested = true;
+        Thread currentThread = thread;
+        if (currentThread != null && !isPaused) LockSupport.unpark(currentThread);
+    }
+
+    /**
+     * Pide que el hilo ejecute {@link OnWakeListener#onWake()} cuando llegue el tiempo dado, aunque
+     * no toque un paso; reemplaza al tiempo pedido antes si no se ha cumplido. Mientras esta
+     * pausado espera a que se reanude.
+     *
+     * @param wakeTimeNanos el tiempo en la base de {@link System#nanoTime()}.
+     */
+    public void wakeAt(long wakeTimeNanos) {
+        this.wakeTimeNanos = wakeTimeNanos;
+        isWakeScheduled = true;
+        Thread currentThread = thread;
+        if (currentThread != null && !isPaused) LockSupport.unpark(currentThread);
+    }
+
+    /** @param wakeListener quien se ejecuta en el hilo del juego cuando lo despiertan. */
+    public void setOnWakeListener(OnWakeListener wakeListener) {
+        this.wakeListener = wakeListener;
+    }
+
+    /** @return los nanosegundos entre cada paso. */
+    public long getTickInterval() {
+        return tickIntervalNanos;
+    }
+
+    /** @return si el hilo esta suspendido o no. */
+    public boolean isPaused() {
+        return isPaused;
+    }
+
+    /** @return si el hilo esta corriendo o no. */
+    public boolean isRunning() {
+        return thread != null;
+    }
+
+    /**
+     * @return si quien llama es el hilo que esta corriendo. Un hilo detenido con {@link #stop()}
+     *         puede seguir a medio paso mientras ya corre otro; los listeners lo revisan para no
+     *         ejecutar ese paso.
+     */
+    public boolean isCurrentThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /** @return cuántos nanosegundos tarde se ejecutó el último paso. */
+    public long getLastLatenessNanos() {
+        return lastLatenessNanos;
+    }
+
+    /** @return cuántos nanosegundos tarde se ejecutó el paso más atrasado desde que arrancó. */
+    public long getMaxLatenessNanos() {
+        return maxLatenessNanos;
+    }
+
+    /**
+     * Interfaz para escuchar los pasos del juego.
+     *
+     * @author Daniel Pedraza-Arcega
+     * @since 1.3
+     */
+    public static interface OnTickListener {
+
+        /** Se ejecuta en el hilo del juego cada vez que pasa un intervalo. */
+        void onTick();
+    }
+
+    /**
+     * Interfaz para escuchar cuando otro hilo despierta al hilo del juego.
+     *
+     * @author Daniel Pedraza-Arcega
+     * @since 1.3
+     */
+    public static interface OnWakeListener {
+
+        /** Se ejecuta en el hilo del juego después de cada {@link GameLoop#wake()}. */
+        void onWake();
+    }
+}
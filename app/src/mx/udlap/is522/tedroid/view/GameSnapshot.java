@@ -0,0 +1,168 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+/**
+ * Copia de lo que hace falta para dibujar un cuadro del juego: las celdas del tablero, el
+ * tetromino en juego con su sombra y los poderes activos, junto con las filas del tablero que
+ * cambiaron desde la copia anterior. El hilo que dibuja solo lee copias ya publicadas, así que
+ * nunca ve el tablero a medio actualizar.
+ *
+ * @author Daniel Pedraza-Arcega
+ * @since 1.3
+ */
+final class GameSnapshot {
+
+    private final Board board;
+    private int[][] tetrominoMatrix;
+    private int tetrominoRow;
+    private int tetrominoColumn;
+    private int ghostRow;
+    private boolean boardInverted;
+    private boolean boardInvisible;
+    private int dirtyTopRow;
+    private int dirtyBottomRow;
+    private boolean fullFrame;
+
+    /**
+     * Construye una copia vacía.
+     *
+     * @param rows el número de filas del tablero.
+     * @param columns el número de columnas del tablero.
+     */
+    GameSnapshot(int rows, int columns) {
+        board = new Board(rows, columns);
+        dirtyTopRow = rows;
+        dirtyBottomRow = -1;
+    }
+
+    /**
+     * Copia el tablero, las filas que cambiaron desde que se marcaron como dibujadas y la posición
+     * del tetromino en juego.
+     *
+     * @param board el tablero del juego.
+     * @param tetromino el tetromino en juego o null si todavía no hay.
+     */
+    void capture(Board board, Tetromino tetromino) {
+        this.board.copyFrom(board);
+        dirtyTopRow = board.getDirtyTopRow();
+        dirtyBottomRow = board.getDirtyBottomRow();
+        if (tetromino != null) {
+            // Las matrices de cada rotación nunca cambian, basta con guardar la referencia
+            tetrominoMatrix = tetromino.getIndexMatrix();
+            tetrominoRow = tetromino.getPosition().getBoardMatrixRow();
+            tetrominoColumn = tetromino.getPosition().getBoardMatrixColumn();
+            ghostRow = tetromino.getGhostRow();
+        } else tetrominoMatrix = null;
+        boardInverted = false;
+        boardInvisible = false;
+        fullFrame = false;
+    }
+
+    /**
+     * Junta los cambios de una copia anterior que nunca se dibujó, para que al saltarla no se
+     * pierdan sus filas ni su cuadro completo.
+     *
+     * @param skipped la copia anterior.
+     */
+    void merge(GameSnapshot skipped) {
+        if (skipped.hasDirtyRows()) {
+            if (hasDirtyRows()) {
+                dirtyTopRow = Math.min(dirtyTopRow, skipped.dirtyTopRow);
+                dirtyBottomRow = Math.max(dirtyBottomRow, skipped.dirtyBottomRow);
+            } else {
+                dirtyTopRow = skipped.dirtyTopRow;
+                dirtyBottomRow = skipped.dirtyBottomRow;
+            }
+        }
+        fullFrame |= skipped.fullFrame;
+    }
+
+    /** @param fullFrame si hay que redibujar toda la vista con esta copia o no. */
+    void setFullFrame(boolean fullFrame) {
+        this.fullFrame = fullFrame;
+    }
+
+    /** @param boardInverted si el tablero se dibuja al revés o no. */
+    void setBoardInverted(boolean boardInverted) {
+        this.boardInverted = boardInverted;
+    }
+
+    /** @param boardInvisible si el tablero se oculta o no. */
+    void setBoardInvisible(boolean boardInvisible) {
+        this.boardInvisible = boardInvisible;
+    }
+
+    /** @return la copia del tablero. */
+    Board getBoard() {
+        return board;
+    }
+
+    /** @return si hay un tetromino en juego o no. */
+    boolean hasTetromino() {
+        return tetrominoMatrix != null;
+    }
+
+    /** @return la matriz con los índices de la paleta del tetromino en juego. */
+    int[][] getTetrominoMatrix() {
+        return tetrominoMatrix;
+    }
+
+    /** @return la fila del tablero donde esta el tetromino en juego. */
+    int getTetrominoRow() {
+        return tetrominoRow;
+    }
+
+    /** @return la columna del tablero donde esta el tetromino en juego. */
+    int getTetrominoColumn() {
+        return tetrominoColumn;
+    }
+
+    /** @return la fila donde quedaría el tetromino en juego si cayera hasta el fondo. */
+    int getGhostRow() {
+        return ghostRow;
+    }
+
+    /** @return si el tablero se dibuja al revés o no. */
+    boolean isBoardInverted() {
+        return boardInverted;
+    }
+
+    /** @return si el tablero se oculta o no. */
+    boolean isBoardInvisible() {
+        return boardInvisible;
+    }
+
+    /** @return si alguna fila del tablero cambió desde la copia anterior. */
+    boolean hasDirtyRows() {
+        return dirtyTopRow <= dirtyBottomRow;
+    }
+
+    /** @return la primera fila que cambió desde la copia anterior. */
+    int getDirtyTopRow() {
+        return dirtyTopRow;
+    }
+
+    /** @return la última fila que cambió desde la copia anterior. */
+    int getDirtyBottomRow() {
+        return dirtyBottomRow;
+    }
+
+    /** @return si hay que redibujar toda la vista con esta copia o no. */
+    boolean isFullFrame() {
+        return fullFrame;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+/**
+ * Cola circular de comandos de entrada entre un solo hilo que los mete, el de los gestos, y un solo
+ * hilo que los saca, el del juego. Cada comando es un byte en un arreglo fijo, junto con el tiempo
+ * del evento que lo causó en otro arreglo, y los índices son volátiles, así que no hay candados ni
+ * se crean objetos al meter o sacar comandos.
+ *
+ * @author Daniel Pedraza-Arcega
+ * @since 1.3
+ */
+final class InputQueue {
+
+    /** Lo que regresa {@link #poll()} cuando la cola esta vacía. */
+    static final int NONE = 0;
+    static final int MOVE_LEFT = 1;
+    static final int MOVE_RIGHT = 2;
+    static final int ROTATE = 3;
+    static final int SOFT_DROP = 4;
+    static final int HARD_DROP = 5;
+
+    /** Empieza un gesto nuevo; los espacios de SoftDrop se vuelven a contar desde cero. */
+    static final int RESET_SOFT_DROP = 6;
+
+    /** Junto con MOVE_LEFT, MOVE_RIGHT o SOFT_DROP indica que se empezó a presionar la tecla. */
+    static final int HOLD = 0x10;
+
+    /** Junto con MOVE_LEFT, MOVE_RIGHT o SOFT_DROP indica que se soltó la tecla. */
+    static final int RELEASE = 0x20;
+
+    private final byte[] commands;
+    private final long[] eventTimes;
+    private final int mask;
+    private volatile int head;
+    private volatile int tail;
+    private long polledEventTime;
+
+    /**
+     * Construye una cola vacía.
+     *
+     * @param capacity cuántos comandos caben; debe ser potencia de 2.
+     * @throws IllegalArgumentException si la capacidad no es potencia de 2.
+     */
+    InputQueue(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("Capacity must be a power of 2: " + capacity);
+        commands = new byte[capacity];
+        eventTimes = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Mete un comando al final de la cola. Solo lo puede llamar el hilo que mete comandos.
+     *
+     * @param command uno de los comandos de esta clase.
+     * @param eventTime el tiempo del evento que causó el comando.
+     * @return si cupo o no; si la cola esta llena el comando se descarta.
+     */
+    boolean offer(int command, long eventTime) {
+        int currentTail = tail;
+        if (currentTail - head == commands.length) return false;
+        commands[currentTail & mask] = (byte) command;
+        eventTimes[currentTail & mask] = eventTime;
+        // Escribir tail después del comando lo publica al otro hilo
+        tail = currentTail + 1;
+        return true;
+    }
+
+    /**
+     * Saca el primer comando de la cola. Solo lo puede llamar el hilo que saca comandos.
+     *
+     * @return el comando o {@link #NONE} si la cola esta vacía.
+     */
+    int poll() {
+        int currentHead = head;
+        if (currentHead == tail) return NONE;
+        int command = commands[currentHead & mask];
+        polledEventTime = eventTimes[currentHead & mask];
+        head = currentHead + 1;
+        return command;
+    }
+
+    /**
+     * @return el tiempo del evento que causó el último comando que regresó {@link #poll()}. Solo
+     *         lo puede llamar el hilo que saca comandos.
+     */
+    long getPolledEventTime() {
+        return polledEventTime;
+    }
+
+    /**
+     * Descarta los comandos pendientes. Solo lo puede llamar el hilo que saca comandos o quien
+     * tenga el candado con el que ese hilo los saca, para que nunca se saque a la vez.
+     */
+    void clear() {
+        head = tail;
+    }
+
+    /** @return si hay comandos en la cola o no. */
+    boolean isEmpty() {
+        return head == tail;
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+import android.view.KeyEvent;
+
+/**
+ * Repite los movimientos de las teclas y botones que se mantienen presionados. Al presionar se
+ * mueve una vez; a los lados, si se sigue presionando, se espera un retraso y después se repite a
+ * un ritmo fijo, y hacia abajo se repite a ese ritmo desde el principio. Los tiempos se miden en
+ * nanosegundos con {@link System#nanoTime()} en cada {@link #update(long)} en lugar de usar las
+ * repeticiones de teclas de Android, así que los movimientos que tocan entre una vuelta y otra
+ * no se pierden y no se crea ningún objeto por repetición.
+ *
+ * @author Daniel Pedraza-Arcega
+ * @since 1.3
+ */
+final class KeyRepeater {
+
+    /** Nanosegundos que hay que mantener un lado antes de que se repita. */
+    static final long DEFAULT_DELAY_NANOS = 167000000L;
+
+    /** Nanosegundos entre cada repetición. */
+    static final long DEFAULT_REPEAT_NANOS = 33000000L;
+
+    /** Máximo de repeticiones atrasadas que se hacen de golpe tras un retraso largo. */
+    private static final int MAX_CATCH_UP_REPEATS = 5;
+
+    private final OnRepeatListener repeatListener;
+    private final long delayNanos;
+    private final long repeatNanos;
+    private boolean isLeftHeld;
+    private boolean isRightHeld;
+    private boolean isDownHeld;
+    private Tetromino.Direction sideDirection;
+    private long nextSideTime;
+    private long nextDownTime;
+
+    /**
+     * Construye un repetidor con los tiempos por default.
+     *
+     * @param repeatListener quien recibe cada movimiento.
+     */
+    KeyRepeater(OnRepeatListener repeatListener) {
+        this(DEFAULT_DELAY_NANOS, DEFAULT_REPEAT_NANOS, repeatListener);
+    }
+
+    /**
+     * Construye un repetidor.
+     *
+     * @param delayNanos cuánto mantener un lado antes de que se repita.
+     * @param repeatNanos cuánto esperar entre cada repetición.
+     * @param repeatListener quien recibe cada movimiento.
+     * @throws IllegalArgumentException si algún tiempo no es positivo.
+     */
+    KeyRepeater(long delayNanos, long repeatNanos, OnRepeatListener repeatListener) {
+        if (delayNanos <= 0L || repeatNanos <= 0L) throw new IllegalArgumentException("Delay and repeat must be positive: " + delayNanos + ", " + repeatNanos);
+        this.delayNanos = delayNanos;
+        this.repeatNanos = repeatNanos;
+        this.repeatListener = repeatListener;
+    }
+
+    /**
+     * Busca el comando de una tecla o botón.
+     *
+     * @param keyCode el código de la tecla.
+     * @return uno de los comandos de {@link InputQueue} o {@link InputQueue#NONE} si la tecla no
+     *         hace nada en el juego.
+     */
+    static int commandForKey(int keyCode) {
+        switch (keyCode) {
+            case KeyEvent.KEYCODE_DPAD_LEFT:
+            case KeyEvent.KEYCODE_A: return InputQueue.MOVE_LEFT;
+            case KeyEvent.KEYCODE_DPAD_RIGHT:
+            case KeyEvent.KEYCODE_D: return InputQueue.MOVE_RIGHT;
+            case KeyEvent.KEYCODE_DPAD_DOWN:
+            case KeyEvent.KEYCODE_S: return InputQueue.SOFT_DROP;
+            case KeyEvent.KEYCODE_DPAD_UP:
+            case KeyEvent.KEYCODE_W:
+            case KeyEvent.KEYCODE_BUTTON_A: return InputQueue.ROTATE;
+            case KeyEvent.KEYCODE_SPACE:
+            case KeyEvent.KEYCODE_BUTTON_X: return InputQueue.HARD_DROP;
+            default: return InputQueue.NONE;
+        }
+    }
+
+    /**
+     * Busca el comando de una posición de un eje de la cruceta de un control.
+     *
+     * @param value la posición del eje redondeada: -1, 0 o 1.
+     * @param negativeCommand el comando hacia -1, arriba o a la izquierda.
+     * @param positiveCommand el comando hacia 1, abajo o a la derecha.
+     * @return uno de los comandos dados o {@link InputQueue#NONE} en el centro.
+     */
+    static int commandForHat(int value, int negativeCommand, int positiveCommand) {
+        if (value < 0) return negativeCommand;
+        if (value > 0) return positiveCommand;
+        return InputQueue.NONE;
+    }
+
+    /**
+     * @param command uno de los comandos de {@link InputQueue}.
+     * @return hacia dónde mueve el comando o null si no se repite.
+     */
+    static Tetromino.Direction directionOf(int command) {
+        switch (command) {
+            case InputQueue.MOVE_LEFT: return Tetromino.Direction.LEFT;
+            case InputQueue.MOVE_RIGHT: return Tetromino.Direction.RIGHT;
+            case InputQueue.SOFT_DROP: return Tetromino.Direction.DOWN;
+            default: return null;
+        }
+    }
+
+    /**
+     * Mueve una vez y empieza a contar para repetir. Entre los lados gana el último presionado.
+     *
+     * @param direction {@link Tetromino.Direction#LEFT}, {@link Tetromino.Direction#RIGHT} o
+     *        {@link Tetromino.Direction#DOWN}.
+     * @param now el tiempo actual en nanosegundos.
+     */
+    void press(Tetromino.Direction direction, long now) {
+        switch (direction) {
+            case LEFT: isLeftHeld = true; break;
+            case RIGHT: isRightHeld = true; break;
+            default: isDownHeld = true; break;
+        }
+        if (direction == Tetromino.Direction.DOWN) nextDownTime = now + repeatNanos;
+        else {
+            sideDirection = direction;
+            nextSideTime = now + delayNanos;
+        }
+        dispatch(direction);
+    }
+
+    /**
+     * Deja de repetir. Si se suelta un lado y el otro sigue presionado se vuelve a contar el
+     * retraso para el otro.
+     *
+     * @param direction hacia dónde se dejó de presionar.
+     * @param now el tiempo actual en nanosegundos.
+     */
+    void release(Tetromino.Direction direction, long now) {
+        switch (direction) {
+            case LEFT: isLeftHeld = false; break;
+            case RIGHT: isRightHeld = false; break;
+            default: isDownHeld = false; return;
+        }
+        if (direction == sideDirection) {
+            if (isLeftHeld) sideDirection = Tetromino.Direction.LEFT;
+            else if (isRightHeld) sideDirection = Tetromino.Direction.RIGHT;
+            else sideDirection = null;
+            nextSideTime = now + delayNanos;
+        }
+    }
+
+    /** Deja de repetir todo, como cuando la vista pierde las teclas. */
+    void releaseAll() {
+        isLeftHeld = false;
+        isRightHeld = false;
+        isDownHeld = false;
+        sideDirection = null;
+    }
+
+    /**
+     * Hace las repeticiones que ya tocan.
+     *
+     * @param now el tiempo actual en nanosegundos.
+     */
+    void update(long now) {
+        if (sideDirection != null) nextSideTime = repeatUntil(sideDirection, nextSideTime, now);
+        if (isDownHeld) nextDownTime = repeatUntil(Tetromino.Direction.DOWN, nextDownTime, now);
+    }
+
+    /**
+     * Hace las repeticiones atrasadas de una dirección hasta el tiempo actual.
+     *
+     * @param direction hacia dónde se repite.
+     * @param nextTime el tiempo en nanosegundos de la siguiente repetición de esa dirección.
+     * @param now el tiempo actual en nanosegundos.
+     * @return el tiempo en nanosegundos de la repetición que sigue.
+     */
+    private long repeatUntil(Tetromino.Direction direction, long nextTime, long now) {
+        int repeats = 0;
+        while (isHeld(direction) && now - nextTime >= 0L && repeats < MAX_CATCH_UP_REPEATS) {
+            nextTime += repeatNanos;
+            dispatch(direction);
+            repeats++;
+        }
+        // Un tetromino no cruza más de medio tablero de un salto aunque el hilo se haya detenido
+        // mucho tiempo con la tecla presionada; la siguiente repetición se cuenta desde ahora
+        if (now - nextTime >= 0L) nextTime = now + repeatNanos;
+        return nextTime;
+    }
+
+    /**
+     * @param direction hacia dónde.
+     * @return si esa dirección se sigue repitiendo o no.
+     */
+    private boolean isHeld(Tetromino.Direction direction) {
+        return direction == Tetromino.Direction.DOWN ? isDownHeld : direction == sideDirection;
+    }
+
+    /**
+     * Avisa un movimiento; si el listener no lo acepta se deja de repetir hasta que se vuelva a
+     * presionar.
+     *
+     * @param direction hacia dónde moverse.
+     */
+    private void dispatch(Tetromino.Direction direction) {
+        if (!repeatListener.onRepeat(direction)) {
+            if (direction == Tetromino.Direction.DOWN) isDownHeld = false;
+            else sideDirection = null;
+        }
+    }
+
+    /** @return si hay algo que repetir o no. */
+    boolean isRepeating() {
+        return sideDirection != null || isDownHeld;
+    }
+
+    /** @return el tiempo en nanosegundos de la siguiente repetición; solo si {@link #isRepeating()}. */
+    long getNextRepeatTime() {
+        if (sideDirection == null) return nextDownTime;
+        if (!isDownHeld) return nextSideTime;
+        return nextDownTime - nextSideTime < 0L ? nextDownTime : nextSideTime;
+    }
+
+    /**
+     * Listener que escuchará los movimientos de las teclas.
+     *
+     * @author Daniel Pedraza-Arcega
+     * @since 1.3
+     */
+    static interface OnRepeatListener {
+
+        /**
+         * Ejecuta este método al presionar y en cada repetición.
+         *
+         * @param direction {@link Tetromino.Direction#LEFT}, {@link Tetromino.Direction#RIGHT} o
+         *        {@link Tetromino.Direction#DOWN}.
+         * @return si se sigue repitiendo o no; con false se deja de repetir hasta que se vuelva a
+         *         presionar.
+         */
+        boolean onRepeat(Tetromino.Direction direction);
+    }
+}
@@ -16,19 +16,32 @@
 package mx.udlap.is522.tedroid.view;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.util.AttributeSet;
 import android.view.View;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
- * Vista que muestra el siguiente tetromino en caer.
+ * Vista que muestra los siguientes tetrominos en caer, uno debajo de otro. Cada figura se dibuja
+ * una sola vez en un Bitmap al tamaño de celda de esta vista, así que cambiar la cola solo copia
+ * esos Bitmaps.
  * 
  * @author Daniel Pedraza-Arcega
  * @since 1.0
  */
 public class NextTetrominoView extends View {
 
-    private Tetromino tetromino;
+    private static final int MAX_SHAPE_CELLS = 4;
+
+    private Shape[] shapes;
+    private int shapeCount;
+    private int previewSize;
+    private float cellSize;
+    private CellAtlas cellAtlas;
+    private Map<Shape, Bitmap> previews;
 
     /**
      * Construye la vista mediante un context.
@@ -37,6 +50,7 @@ public class NextTetrominoView extends View {
      */
     public NextTetrominoView(Context context) {
         super(context);
+        setUp();
     }
 
     /**
@@ -46,6 +60,7 @@ public class NextTetrominoView extends View {
      */
     public NextTetrominoView(Context context, AttributeSet attrs) {
         super(context, attrs);
+        setUp();
     }
 
     /**
@@ -55,22 +70,113 @@ public class NextTetrominoView extends View {
      */
     public NextTetrominoView(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
+        setUp();
+    }
+
+    /** Inicializa la cola vacía y el estilo para pintar. */
+    private void setUp() {
+        shapes = new Shape[GameEngine.MAX_PREVIEW_SIZE];
+        previewSize = GameEngine.DEFAULT_PREVIEW_SIZE;
+        previews = new HashMap<>();
+        cellAtlas = new CellAtlas(new Palette(getContext().getResources()), getContext().getResources().getColor(Shape.BORDER_COLOR));
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        setUpCellSize();
+    }
+
+    /**
+     * Calcula el tamaño de celda necesario para que quepa cualquier figura en el espacio de cada
+     * figura de la cola y descarta las figuras dibujadas a otro tamaño.
+     */
+    private void setUpCellSize() {
+        float slotHeight = getContentHeight() / (float) previewSize;
+        cellSize = Math.min(getContentWidth(), slotHeight) / MAX_SHAPE_CELLS;
+        cellAtlas.setCellSize(cellSize, cellSize);
+        recyclePreviews();
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
         if (!isInEditMode()) {
-            if (tetromino != null) {
-                canvas.translate(10, 10);
-                tetromino.drawOn(canvas);
+            float slotHeight = getContentHeight() / (float) previewSize;
+            for (int i = 0; i < shapeCount && i < previewSize; i++) {
+                Bitmap preview = getPreview(shapes[i]);
+                if (preview != null) {
+                    float left = getPaddingLeft() + (getContentWidth() - preview.getWidth()) / 2f;
+                    float top = getPaddingTop() + i * slotHeight + (slotHeight - preview.getHeight()) / 2f;
+                    canvas.drawBitmap(preview, left, top, null);
+                }
             }
         }
     }
 
-    /** @param tetromino el tetromino a dibujar. */
-    public void setTetromino(Tetromino tetromino) {
-        this.tetromino = tetromino;
+    /**
+     * @param shape una figura.
+     * @return la figura dibujada al tamaño de celda actual o null si la vista no tiene tamaño.
+     */
+    private Bitmap getPreview(Shape shape) {
+        Bitmap preview = previews.get(shape);
+        if (preview == null && cellSize > 0) {
+            int[][] shapeMatrix = ColorIndex.indexMatrixOf(shape.getShapeMatrix());
+            preview = Bitmap.createBitmap((int) Math.ceil(shapeMatrix[0].length * cellSize), (int) Math.ceil(shapeMatrix.length * cellSize), Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(preview);
+            for (int row = 0; row < shapeMatrix.length; row++) {
+                for (int column = 0; column < shapeMatrix[0].length; column++) {
+                    if (shapeMatrix[row][column] != ColorIndex.EMPTY) {
+                        float x0 = column * cellSize;
+                        float y0 = row * cellSize;
+                        float x1 = (column + 1) * cellSize;
+                        float y1 = (row + 1) * cellSize;
+                        cellAtlas.drawCell(canvas, shapeMatrix[row][column], x0, y0, x1, y1);
+                    }
+                }
+            }
+            previews.put(shape, preview);
+        }
+
+        return preview;
+    }
+
+    /** Libera las figuras dibujadas. */
+    private void recyclePreviews() {
+        for (Bitmap preview : previews.values()) preview.recycle();
+        previews.clear();
+    }
+
+    /** @return el ancho sin el padding. */
+    private int getContentWidth() {
+        return getWidth() - getPaddingLeft() - getPaddingRight();
+    }
+
+    /** @return el alto sin el padding. */
+    private int getContentHeight() {
+        return getHeight() - getPaddingTop() - getPaddingBottom();
+    }
+
+    /**
+     * Cambia las figuras de la cola.
+     * 
+     * @param upcomingShapes las figuras, empezando por la del siguiente tetromino.
+     * @param count cuántas figuras tomar del arreglo.
+     */
+    public void setUpcomingShapes(Shape[] upcomingShapes, int count) {
+        shapeCount = Math.min(count, shapes.length);
+        System.arraycopy(upcomingShapes, 0, shapes, 0, shapeCount);
+        invalidate();
+    }
+
+    /**
+     * Cambia cuántas figuras de la cola se muestran.
+     * 
+     * @param previewSize 1 <= previewSize <= {@link GameEngine#MAX_PREVIEW_SIZE}.
+     */
+    public void setPreviewSize(int previewSize) {
+        this.previewSize = previewSize <= 1 ? 1 : previewSize >= GameEngine.MAX_PREVIEW_SIZE ? GameEngine.MAX_PREVIEW_SIZE : previewSize;
+        setUpCellSize();
         invalidate();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+import android.content.res.Resources;
+import android.graphics.Color;
+
+import java.util.Arrays;
+
+/**
+ * Colores ARGB de los índices de {@link ColorIndex}. Cada vista resuelve una sola vez el color de
+ * cada índice para que dibujar una celda sea leer un arreglo en lugar de consultar los Resources.
+ * Se usa solo en el hilo principal.
+ *
+ * @author Daniel Pedraza-Arcega
+ * @since 1.3
+ */
+final class Palette {
+
+    private final Resources resources;
+    private int[] argbColors;
+
+    /**
+     * Resuelve los colores de todos los índices conocidos.
+     *
+     * @param resources los Resources de donde se toman los colores.
+     */
+    Palette(Resources resources) {
+        this.resources = resources;
+        argbColors = new int[0];
+        resolveColors();
+    }
+
+    /**
+     * @param index un índice de {@link ColorIndex}.
+     * @return el color ARGB del índice.
+     */
+    int getArgb(int index) {
+        if (index >= argbColors.length) resolveColors();
+        return argbColors[index];
+    }
+
+    /** Resuelve los colores de los índices que se agregaron desde la última vez. */
+    private void resolveColors() {
+        int resolved = argbColors.length;
+        argbColors = Arrays.copyOf(argbColors, ColorIndex.size());
+        for (int index = resolved; index < argbColors.length; index++) {
+            argbColors[index] = index == ColorIndex.EMPTY ? Color.TRANSPARENT : resources.getColor(ColorIndex.colorIdOf(index));
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+import java.util.Random;
+
+/**
+ * Estrategia para escoger la siguiente figura que cae. Regresa solo el índice de la figura, así
+ * que no se construye ningún tetromino para descartarlo, y con la misma semilla siempre produce
+ * la misma secuencia de figuras.
+ *
+ * @author Daniel Pedraza-Arcega
+ * @since 1.3
+ */
+public abstract class Randomizer {
+
+    private final int shapes;
+    private final Random random;
+
+    /**
+     * Construye un generador de figuras.
+     *
+     * @param shapes el número de figuras entre las que se escoge.
+     * @param seed la semilla de los números aleatorios.
+     */
+    protected Randomizer(int shapes, long seed) {
+        this(shapes, new Random(seed));
+    }
+
+    /**
+     * Construye un generador de figuras con un Random dado.
+     *
+     * @param shapes el número de figuras entre las que se escoge.
+     * @param random el objeto Random.
+     */
+    Randomizer(int shapes, Random random) {
+        this.shapes = shapes;
+        this.random = random;
+    }
+
+    /** @return el índice de la siguiente figura, 0 <= índice < {@link #getShapes()}. */
+    public abstract int next();
+
+    /** @return el número de figuras entre las que se escoge. */
+    public int getShapes() {
+        return shapes;
+    }
+
+    /** @return el objeto Random. */
+    protected Random getRandom() {
+        return random;
+    }
+
+    /**
+     * Cada figura sale con la misma probabilidad sin importar las anteriores.
+     *
+     * @author Daniel Pedraza-Arcega
+     * @since 1.3
+     */
+    public static class Pure extends Randomizer {
+
+        /** @see Randomizer#Randomizer(int, long) */
+        public Pure(int shapes, long seed) {
+            super(shapes, seed);
+        }
+
+        /** @see Randomizer#Randomizer(int, Random) */
+        Pure(int shapes, Random random) {
+            super(shapes, random);
+        }
+
+        @Override
+        public int next() {
+            return getRandom().nextInt(getShapes());
+        }
+    }
+
+    /**
+     * La figura no se puede repetir más de 2 veces seguidas; si toca una tercera vez se vuelve a
+     * escoger.
+     *
+     * @author Daniel Pedraza-Arcega
+     * @since 1.3
+     */
+    public static class NoTriple extends Randomizer {
+
+        private static final int MAX_REPEATS = 2;
+
+        private int lastShape = -1;
+        private int repeats;
+
+        /** @see Randomizer#Randomizer(int, long) */
+        public NoTriple(int shapes, long seed) {
+            super(shapes, seed);
+        }
+
+        /** @see Randomizer#Randomizer(int, Random) */
+        NoTriple(int shapes, Random random) {
+            super(shapes, random);
+        }
+
+        @Override
+        public int next() {
+            int shape;
+            do shape = getRandom().nextInt(getShapes()); while (shape == lastShape && repeats >= MAX_REPEATS);
+            if (shape == lastShape) repeats++;
+            else repeats = 1;
+            lastShape = shape;
+            return shape;
+        }
+    }
+
+    /**
+     * Mete una de cada figura en una bolsa, la revuelve y las saca una por una; cuando se vacía
+     * vuelve a llenarla. Así ninguna figura tarda más de dos bolsas en salir.
+     *
+     * @author Daniel Pedraza-Arcega
+     * @since 1.3
+     */
+    public static class Bag extends Randomizer {
+
+        private final int[] bag;
+        private int index;
+
+        /** @see Randomizer#Randomizer(int, long) */
+        public Bag(int shapes, long seed) {
+            this(shapes, new Random(seed));
+        }
+
+        /** @see Randomizer#Randomizer(int, Random) */
+        Bag(int shapes, Random random) {
+            super(shapes, random);
+            bag = new int[shapes];
+            for (int shape = 0; shape < shapes; shape++) bag[shape] = shape;
+            index = shapes;
+        }
+
+        @Override
+        public int next() {
+            if (index == bag.length) shuffle();
+            return bag[index++];
+        }
+
+        /** Revuelve la bolsa en su lugar con el algoritmo de Fisher-Yates. */
+        private void shuffle() {
+            for (int i = bag.length - 1; i > 0; i--) {
+                int j = getRandom().nextInt(i + 1);
+                int shape = bag[i];
+                bag[i] = bag[j];
+                bag[j] = shape;
+            }
+            index = 0;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+/**
+ * Tabla inmutable con todas las rotaciones de una figura y sus máscaras de bits por fila. Se
+ * construye una sola vez para que rotar un tetromino solo cambie un índice.
+ *
+ * @author Daniel Pedraza-Arcega
+ * @since 1.3
+ */
+final class ShapeRotations {
+
+    private static final int ROTATIONS = 4;
+
+    private final int[][][] shapeMatrices;
+    private final int[][][] indexMatrices;
+    private final int[][] shapeRowMasks;
+    private final int[][] bottomProfiles;
+
+    /**
+     * Construye la tabla de rotaciones de una figura. Cada rotación es la anterior girada 90° en
+     * sentido de las agujas del reloj.
+     *
+     * @param shapeMatrix la forma en una matriz de android.R.color.transparent y R.color.id.
+     * @param hasRotation si tiene o no rotación; si no tiene, la tabla solo tendrá una entrada.
+     */
+    ShapeRotations(int[][] shapeMatrix, boolean hasRotation) {
+        int count = hasRotation ? ROTATIONS : 1;
+        shapeMatrices = new int[count][][];
+        indexMatrices = new int[count][][];
+        shapeRowMasks = new int[count][];
+        bottomProfiles = new int[count][];
+        shapeMatrices[0] = copyOf(shapeMatrix);
+        for (int rotation = 1; rotation < count; rotation++) shapeMatrices[rotation] = rotateClockwise(shapeMatrices[rotation - 1]);
+        for (int rotation = 0; rotation < count; rotation++) {
+            indexMatrices[rotation] = ColorIndex.indexMatrixOf(shapeMatrices[rotation]);
+            shapeRowMasks[rotation] = Board.rowMasksOf(shapeMatrices[rotation]);
+            bottomProfiles[rotation] = bottomProfileOf(shapeMatrices[rotation]);
+        }
+    }
+
+    /**
+     * @param shapeMatrix la matriz a copiar.
+     * @return una copia profunda de la matriz.
+     */
+    private static int[][] copyOf(int[][] shapeMatrix) {
+        int[][] copy = new int[shapeMatrix.length][];
+        for (int row = 0; row < shapeMatrix.length; row++) copy[row] = shapeMatrix[row].clone();
+        return copy;
+    }
+
+    /**
+     * @param shapeMatrix la matriz a rotar.
+     * @return una nueva matriz girada 90° en sentido de las agujas del reloj.
+     */
+    private static int[][] rotateClockwise(int[][] shapeMatrix) {
+        int[][] rotated = new int[shapeMatrix[0].length][shapeMatrix.length];
+        for (int row = 0; row < shapeMatrix.length; row++) {
+            for (int column = 0; column < shapeMatrix[0].length; column++) {
+                rotated[column][shapeMatrix.length - 1 - row] = shapeMatrix[row][column];
+            }
+        }
+
+        return rotated;
+    }
+
+    /**
+     * @param shapeMatrix una matriz de android.R.color.transparent y R.color.ids.
+     * @return por cada columna, la fila más baja que no es transparente o -1 si la columna esta
+     *         vacía.
+     */
+    private static int[] bottomProfileOf(int[][] shapeMatrix) {
+        int[] profile = new int[shapeMatrix[0].length];
+        for (int column = 0; column < profile.length; column++) {
+            profile[column] = -1;
+            for (int row = shapeMatrix.length - 1; row >= 0 && profile[column] == -1; row--) {
+                if (shapeMatrix[row][column] != android.R.color.transparent) profile[column] = row;
+            }
+        }
+
+        return profile;
+    }
+
+    /** @return cuántas rotaciones distintas hay en la tabla. */
+    int size() {
+        return shapeMatrices.length;
+    }
+
+    /**
+     * @param rotation la rotación actual.
+     * @return el índice de la siguiente rotación en sentido de las agujas del reloj.
+     */
+    int next(int rotation) {
+        return (rotation + 1) % shapeMatrices.length;
+    }
+
+    /**
+     * @param rotation el índice de la rotación.
+     * @return la matriz de la rotación; no debe modificarse.
+     */
+    int[][] getShapeMatrix(int rotation) {
+        return shapeMatrices[rotation];
+    }
+
+    /**
+     * @param rotation el índice de la rotación.
+     * @return la matriz de índices de {@link ColorIndex} de la rotación; no debe modificarse.
+     */
+    int[][] getIndexMatrix(int rotation) {
+        return indexMatrices[rotation];
+    }
+
+    /**
+     * @param rotation el índice de la rotación.
+     * @return las máscaras de bits por fila de la rotación; no deben modificarse.
+     */
+    int[] getShapeRowMasks(int rotation) {
+        return shapeRowMasks[rotation];
+    }
+
+    /**
+     * @param rotation el índice de la rotación.
+     * @return por cada columna de la rotación, su fila más baja ocupada o -1; no debe modificarse.
+     */
+    int[] getBottomProfile(int rotation) {
+        return bottomProfiles[rotation];
+    }
+
+    /**
+     * @param rotation el índice de la rotación.
+     * @return el ancho de la rotación.
+     */
+    int getColumns(int rotation) {
+        return shapeMatrices[rotation][0].length;
+    }
+}
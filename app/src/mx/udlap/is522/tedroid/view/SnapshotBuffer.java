@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+/**
+ * Intercambia copias del juego entre quien lo actualiza y el hilo que lo dibuja. Además de la
+ * copia que se escribe y la que se dibuja hay una lista para dibujarse, así que publicar nunca
+ * espera a que termine un cuadro y dibujar nunca espera a que termine un paso; si se publican
+ * varias copias antes del siguiente cuadro solo se dibuja la última.
+ *
+ * @author Daniel Pedraza-Arcega
+ * @since 1.3
+ */
+final class SnapshotBuffer {
+
+    private GameSnapshot back;
+    private GameSnapshot ready;
+    private GameSnapshot front;
+    private boolean hasNewSnapshot;
+    private volatile OnPublishListener publishListener;
+
+    /**
+     * Construye las tres copias.
+     *
+     * @param rows el número de filas del tablero.
+     * @param columns el número de columnas del tablero.
+     */
+    SnapshotBuffer(int rows, int columns) {
+        back = new GameSnapshot(rows, columns);
+        ready = new GameSnapshot(rows, columns);
+        front = new GameSnapshot(rows, columns);
+    }
+
+    /**
+     * @return la copia donde se escribe el siguiente estado. Solo quien publica la puede usar y
+     *         solo hasta llamar a {@link #publish()}.
+     */
+    GameSnapshot getBack() {
+        return back;
+    }
+
+    /**
+     * @return la copia que se dibuja, la última que regresó {@link #pollLatest()} o una vacía; es
+     *         solo de quien dibuja.
+     */
+    GameSnapshot getFront() {
+        return front;
+    }
+
+    /**
+     * Deja la copia escrita lista para dibujarse y avisa a quien dibuja. Si la copia lista anterior
+     * no se alcanzó a dibujar, sus cambios se juntan a la nueva.
+     */
+    void publish() {
+        synchronized (this) {
+            GameSnapshot published = back;
+            if (hasNewSnapshot) published.merge(ready);
+            back = ready;
+            ready = published;
+            hasNewSnapshot = true;
+        }
+        OnPublishListener listener = publishListener;
+        if (listener != null) listener.onPublish();
+    }
+
+    /**
+     * @return la última copia publicada o null si no hay una nueva desde la última vez; es solo
+     *         de quien dibuja hasta la siguiente llamada.
+     */
+    synchronized GameSnapshot pollLatest() {
+        return hasNewSnapshot ? swapFront() : null;
+    }
+
+    /** @param publishListener el listener que escuchará cuando se publique una copia. */
+    void setOnPublishListener(OnPublishListener publishListener) {
+        this.publishListener = publishListener;
+    }
+
+    /** @return la copia lista, que pasa a ser la que se dibuja. */
+    private GameSnapshot swapFront() {
+        GameSnapshot latest = ready;
+        ready = front;
+        front = latest;
+        hasNewSnapshot = false;
+        return front;
+    }
+
+    /**
+     * Listener que escuchará cuando se publique una copia.
+     *
+     * @author Daniel Pedraza-Arcega
+     * @since 1.3
+     */
+    static interface OnPublishListener {
+
+        /** Se ejecuta en el hilo que publicó; debe regresar rápido porque no se dibuja aquí. */
+        void onPublish();
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+import android.content.Context;
+import android.media.AudioManager;
+import android.media.SoundPool;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.preference.PreferenceManager;
+
+import mx.udlap.is522.tedroid.R;
+
+/**
+ * Los sonidos del juego, uno solo para toda la aplicación. Se crea al abrir la aplicación con
+ * {@link #preload(Context)} y carga los sonidos en su propio hilo de audio, así que las pantallas
+ * del juego no esperan a que se carguen; cada sonido se puede reproducir en cuanto se termina de
+ * decodificar, lo que avisa el {@link SoundPool.OnLoadCompleteListener}, y los que todavía no
+ * estan listos simplemente no suenan. Los sonidos se piden uno tras otro porque
+ * {@link SoundPool#load(Context, int, int)} solo los encola y el SoundPool los decodifica en su
+ * propio hilo, así que pedirlos desde varios hilos no los cargaría más rápido. Con
+ * {@link #release()} se liberan el SoundPool y el hilo al salir de la aplicación.
+ *
+ * @author Daniel Pedraza-Arcega
+ * @since 1.3
+ */
+public final class SoundBank implements SoundPool.OnLoadCompleteListener {
+
+    private static final int LOAD_SUCCESS = 0;
+
+    private static SoundBank instance;
+
+    private final Context context;
+    private final HandlerThread audioThread;
+    private final Handler audioHandler;
+    private final int[] soundIds;
+    private final Runnable loadTask;
+    private final Runnable releaseTask;
+    private SoundPool soundPool;
+    private volatile int readySounds;
+
+    /**
+     * Arranca el hilo de audio.
+     *
+     * @param context el contexto de la aplicación.
+     */
+    private SoundBank(Context context) {
+        this.context = context;
+        soundIds = new int[SoundEffects.SOUND_RESOURCES.length];
+        loadTask = new Runnable() {
+
+            @Override
+            public void run() {
+                loadSounds();
+            }
+        };
+        releaseTask = new Runnable() {
+
+            @Override
+            public void run() {
+                releaseSounds();
+            }
+        };
+        audioThread = new HandlerThread("SoundBank", Process.THREAD_PRIORITY_AUDIO);
+        audioThread.start();
+        audioHandler = new Handler(audioThread.getLooper());
+    }
+
+    /**
+     * Crea los sonidos de la aplicación si no existen y, si estan habilitados en la configuración,
+     * empieza a cargarlos en el hilo de audio. Llamarlo más veces no hace nada más. Se ejecuta en
+     * el hilo principal, igual que quien lee la configuración en {@link SoundEffects}, y regresa
+     * en cuanto se piden los sonidos.
+     *
+     * @param context cualquier contexto de la aplicación.
+     * @return los sonidos de la aplicación.
+     */
+    public static synchronized SoundBank preload(Context context) {
+        if (instance == null) {
+            Context applicationContext = context.getApplicationContext();
+            instance = new SoundBank(applicationContext);
+            boolean isEnabled = PreferenceManager.getDefaultSharedPreferences(applicationContext).getBoolean(
+                    applicationContext.getString(R.string.sounds_switch_key), 
+                    applicationContext.getResources().getBoolean(R.bool.default_sounds_switch_value));
+            if (isEnabled) instance.load();
+        }
+        return instance;
+    }
+
+    /**
+     * Libera el SoundPool y detiene el hilo de audio, después de los sonidos que ya estaban
+     * pendientes. Se llama al salir de la aplicación o al terminar una prueba; el siguiente
+     * {@link #preload(Context)} vuelve a crear los sonidos.
+     */
+    public static synchronized void release() {
+        if (instance != null) {
+            instance.audioHandler.post(instance.releaseTask);
+            instance = null;
+        }
+    }
+
+    /**
+     * @return los sonidos de la aplicación o null si ya se liberaron; a diferencia de
+     *         {@link #preload(Context)} no los vuelve a crear, así que se puede llamar desde el
+     *         hilo del juego.
+     */
+    static synchronized SoundBank current() {
+        return instance;
+    }
+
+    /** Carga los sonidos en el hilo de audio si no se habían cargado, como al habilitarlos. */
+    void load() {
+        audioHandler.post(loadTask);
+    }
+
+    /**
+     * @param task lo que se ejecuta en el hilo de audio, después de lo que ya estaba pendiente.
+     * @return si se encoló o no; no se encola si el hilo de audio ya se detuvo.
+     */
+    boolean post(Runnable task) {
+        return audioHandler.post(task);
+    }
+
+    /** @param task lo que se quita de los pendientes del hilo de audio. */
+    void removeCallbacks(Runnable task) {
+        audioHandler.removeCallbacks(task);
+    }
+
+    /**
+     * Reproduce un sonido si ya esta listo; se ejecuta en el hilo de audio.
+     *
+     * @param sound uno de los sonidos de {@link SoundEffects}.
+     */
+    void play(int sound) {
+        if (isReady(sound)) soundPool.play(soundIds[sound], 1f, 1f, 1, 0, 1f);
+    }
+
+    /**
+     * @param sound uno de los sonidos de {@link SoundEffects}.
+     * @return si el sonido ya se terminó de cargar o no.
+     */
+    public boolean isReady(int sound) {
+        return (readySounds & (1 << sound)) != 0;
+    }
+
+    /** Empieza a cargar los sonidos si no se habían cargado; se ejecuta en el hilo de audio. */
+    private void loadSounds() {
+        if (soundPool == null) {
+            soundPool = new SoundPool(soundIds.length, AudioManager.STREAM_MUSIC, 0);
+            soundPool.setOnLoadCompleteListener(this);
+            for (int sound = 0; sound < soundIds.length; sound++) soundIds[sound] = soundPool.load(context, SoundEffects.SOUND_RESOURCES[sound], 1);
+        }
+    }
+
+    /** Libera el SoundPool y termina el hilo de audio; se ejecuta en el hilo de audio. */
+    private void releaseSounds() {
+        readySounds = 0;
+        if (soundPool != null) {
+            soundPool.release();
+            soundPool = null;
+        }
+        // Lo que se pida después se descarta
+        audioThread.quit();
+    }
+
+    /** Se ejecuta en el hilo de audio, donde se creó el SoundPool. */
+    @Override
+    public void onLoadComplete(SoundPool soundPool, int sampleId, int status) {
+        if (status != LOAD_SUCCESS) return;
+        for (int sound = 0; sound < soundIds.length; sound++) {
+            // Solo el hilo de audio escribe, el volatile basta para que otros hilos lo lean
+            if (soundIds[sound] == sampleId) readySounds |= 1 << sound;
+        }
+    }
+}
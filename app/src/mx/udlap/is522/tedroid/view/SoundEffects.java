@@ -0,0 +1,154 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import mx.udlap.is522.tedroid.R;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reproduce los sonidos del juego en el hilo de audio del {@link SoundBank}. Si los sonidos estan
+ * habilitados se guarda al iniciar y se actualiza solo cuando cambia la configuración, así que
+ * pedir un sonido no lee las preferencias; cada sonido pedido se marca en un entero y el hilo de
+ * audio reproduce todos los marcados de una vez, así que varios sonidos en un mismo paso, como al
+ * caer un tetromino y completar lineas, son un solo mensaje y un mismo sonido repetido se
+ * reproduce una vez.
+ *
+ * @author Daniel Pedraza-Arcega
+ * @since 1.3
+ */
+public final class SoundEffects implements SharedPreferences.OnSharedPreferenceChangeListener {
+
+    static final int DROP_SOUND = 0;
+    static final int GAME_OVER_SOUND = 1;
+    static final int LEVEL_UP_SOUND = 2;
+    static final int LINE_CLEAR_SOUND = 3;
+    static final int PAUSE_SOUND = 4;
+    static final int ROTATE_SOUND = 5;
+
+    /** Los archivos de cada sonido en el orden de sus constantes. */
+    static final int[] SOUND_RESOURCES = { 
+        R.raw.on_drop, 
+        R.raw.on_game_over, 
+        R.raw.on_level_up, 
+        R.raw.on_line_clear, 
+        R.raw.on_pause, 
+        R.raw.on_rotate 
+    };
+
+    private final Context context;
+    private final String soundsSwitchKey;
+    private final boolean defaultSoundsSwitchValue;
+    private final AtomicInteger pendingSounds;
+    private final Runnable playTask;
+    private volatile SoundBank soundBank;
+    private volatile boolean isStarted;
+    private volatile boolean isEnabled;
+
+    /**
+     * Construye un reproductor detenido.
+     *
+     * @param context el contexto de donde se leen las preferencias.
+     */
+    public SoundEffects(Context context) {
+        this.context = context.getApplicationContext();
+        soundsSwitchKey = context.getString(R.string.sounds_switch_key);
+        defaultSoundsSwitchValue = context.getResources().getBoolean(R.bool.default_sounds_switch_value);
+        pendingSounds = new AtomicInteger();
+        playTask = new Runnable() {
+
+            @Override
+            public void run() {
+                playPendingSounds();
+            }
+        };
+    }
+
+    /**
+     * Empieza a escuchar la configuración. Si la aplicación no precargó los sonidos, como al
+     * volver a una pantalla del juego después de que el sistema cerró la aplicación, se precargan
+     * aquí. Se ejecuta en el hilo principal.
+     */
+    public void start() {
+        if (!isStarted) {
+            isStarted = true;
+            soundBank = SoundBank.preload(context);
+            SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+            preferences.registerOnSharedPreferenceChangeListener(this);
+            isEnabled = preferences.getBoolean(soundsSwitchKey, defaultSoundsSwitchValue);
+        }
+    }
+
+    /**
+     * Deja de escuchar la configuración y descarta los sonidos pedidos que no se han reproducido;
+     * los sonidos cargados se quedan para la siguiente pantalla. Se ejecuta en el hilo principal.
+     */
+    public void stop() {
+        if (isStarted) {
+            isStarted = false;
+            PreferenceManager.getDefaultSharedPreferences(context).unregisterOnSharedPreferenceChangeListener(this);
+            soundBank.removeCallbacks(playTask);
+            pendingSounds.set(0);
+        }
+    }
+
+    /**
+     * Pide un sonido sin esperar a que se reproduzca. Se puede llamar desde el hilo del juego.
+     *
+     * @param sound uno de los sonidos de esta clase.
+     */
+    void play(int sound) {
+        if (isEnabled && isStarted) {
+            int previous;
+            do {
+                previous = pendingSounds.get();
+            } while (!pendingSounds.compareAndSet(previous, previous | (1 << sound)));
+            // Si ya había sonidos pendientes el mensaje ya esta en camino
+            if (previous == 0) postPendingSounds();
+        }
+    }
+
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        if (soundsSwitchKey.equals(key)) {
+            isEnabled = sharedPreferences.getBoolean(soundsSwitchKey, defaultSoundsSwitchValue);
+            if (isEnabled && isStarted) soundBank.load();
+        }
+    }
+
+    /**
+     * Manda los sonidos pedidos al hilo de audio de los sonidos que existen ahora, porque los que
+     * se guardaron al iniciar se pudieron liberar al salir del menú principal. Si ya no hay hilo de
+     * audio se descartan los pedidos; si se quedaran marcados ningún sonido volvería a mandarse.
+     */
+    private void postPendingSounds() {
+        SoundBank bank = SoundBank.current();
+        if (bank != null) soundBank = bank;
+        if (bank == null || !bank.post(playTask)) pendingSounds.set(0);
+    }
+
+    /** Reproduce todos los sonidos pedidos desde la última vez; se ejecuta en el hilo de audio. */
+    private void playPendingSounds() {
+        int sounds = pendingSounds.getAndSet(0);
+        for (int sound = 0; sound < SOUND_RESOURCES.length; sound++) {
+            if ((sounds & (1 << sound)) != 0) soundBank.play(sound);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+/**
+ * Reglas del juego especial: además de los tetrominos clásicos caen tetrominos con poderes que se
+ * activan la primera vez que rotan y duran hasta que el tetromino se queda en el tablero.
+ *
+ * @author Daniel Pedraza-Arcega, Andrés Peña-Peralta
+ * @since 1.3
+ */
+public class SpecialGameEngine extends GameEngine {
+
+    private static final SpecialTetrominoShape[] SHAPES = SpecialTetrominoShape.values();
+
+    private boolean invertedBoardMatrix;
+    private boolean invisibleBoardMatrix;
+    private boolean extraFeature;
+
+    @Override
+    protected SpecialTetromino randomTetromino() {
+        return new SpecialTetromino.Builder(getBoard()).use(SHAPES[nextShapeIndex()]).build();
+    }
+
+    @Override
+    protected void reuseAsRandomTetromino(Tetromino tetromino) {
+        SpecialTetrominoShape shape = SHAPES[nextShapeIndex()];
+        tetromino.reset(shape, shape.getRotations());
+    }
+
+    @Override
+    protected SpecialTetrominoShape shapeAt(int shapeIndex) {
+        return SHAPES[shapeIndex];
+    }
+
+    @Override
+    protected Randomizer createDefaultRandomizer() {
+        return new Randomizer.NoTriple(SHAPES.length, System.nanoTime());
+    }
+
+    /** Los poderes se activan antes de avisar que el tetromino rotó. */
+    @Override
+    protected void onCurrentTetrominoRotated() {
+        // Tetrominos con poder
+        Shape shape = getCurrentTetromino().getShape();
+        if (shape == SpecialTetrominoShape.SPECIAL_I && !extraFeature) {
+            extraFeature = true;
+            invisibleBoardMatrix = !invisibleBoardMatrix;
+        }
+        if (shape == SpecialTetrominoShape.SPECIAL_L && !extraFeature) {
+            extraFeature = true;
+            gravity();
+        }
+        if (shape == SpecialTetrominoShape.SPECIAL_S && !extraFeature) {
+            extraFeature = true;
+            invertedBoardMatrix = !invertedBoardMatrix;
+        }
+    }
+
+    @Override
+    protected void lockCurrentTetromino() {
+        resetExtraFeatures();
+        super.lockCurrentTetromino();
+    }
+
+    /** Regresa los booleanos de las características extra a sus valores originales. */
+    private void resetExtraFeatures() {
+        invisibleBoardMatrix = false;
+        invertedBoardMatrix = false;
+        extraFeature = false;
+    }
+
+    /** Hace caer todas las celdas del tablero hasta el primer espacio vacío de su columna. */
+    private void gravity() {
+        Board board = getBoard();
+        for (int col = 0; col < board.getColumns(); col++) {
+            int firstEmpty = -1;
+            for (int ren = board.getRows() - 1; ren > 0; ren--) {
+                if (board.isEmpty(ren, col) && firstEmpty == -1) firstEmpty = ren;
+                if (!board.isEmpty(ren, col) && firstEmpty != -1) {
+                    board.set(firstEmpty, col, board.get(ren, col));
+                    // Con el anterior solito hay un efecto interesante
+                    board.set(ren, col, ColorIndex.EMPTY);
+                    firstEmpty = firstEmpty - 1;
+                }
+            }
+        }
+    }
+
+    @Override
+    void capture(GameSnapshot snapshot) {
+        super.capture(snapshot);
+        snapshot.setBoardInverted(invertedBoardMatrix);
+        snapshot.setBoardInvisible(invisibleBoardMatrix);
+    }
+
+    /** @return si el tablero se dibuja al revés o no. */
+    public boolean isBoardMatrixInverted() {
+        return invertedBoardMatrix;
+    }
+
+    /** @return si el tablero se oculta o no. */
+    public boolean isBoardMatrixInvisible() {
+        return invisibleBoardMatrix;
+    }
+
+    @Override
+    public SpecialTetromino getCurrentTetromino() {
+        return (SpecialTetromino) super.getCurrentTetromino();
+    }
+
+    @Override
+    public SpecialTetromino getNextTetromino() {
+        return (SpecialTetromino) super.getNextTetromino();
+    }
+}
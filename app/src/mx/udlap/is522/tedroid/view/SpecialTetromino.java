@@ -15,8 +15,6 @@
  */
 package mx.udlap.is522.tedroid.view;
 
-import android.graphics.Canvas;
-
 /**
  * Define el comportamiento de cualquier tetromino o pieza de tetris.
  * 
@@ -25,29 +23,8 @@ import android.graphics.Canvas;
  */
 public class SpecialTetromino extends Tetromino {
 
-    SpecialTetromino(GameBoardView gameBoardView, int[][] shapeMatrix, boolean hasRotation) {
-        super(gameBoardView, shapeMatrix, hasRotation);
-    }
-
-    /**
-     * Dibuja este tetromino en un canvas invertido.
-     * 
-     * @param canvas el objeto donde dibujar.
-     */
-    void drawInverted(Canvas canvas) {
-        for (int row = 0; row < getShapeMatrix().length; row++) {
-            for (int column = 0; column < getShapeMatrix()[0].length; column++) {
-                if (getShapeMatrix()[row][column] != android.R.color.transparent) {
-                    getForeground().setColor(getGameBoardView().getContext().getResources().getColor(getShapeMatrix()[row][column]));
-                    float x0 = (column + getPosition().getBoardMatrixColumn()) * getGameBoardView().getBoardColumnWidth();
-                    float y0 = (canvas.getHeight()-getGameBoardView().getBoardRowHeight())-((row + getPosition().getBoardMatrixRow()) * getGameBoardView().getBoardRowHeight());
-                    float x1 = (column + 1 + getPosition().getBoardMatrixColumn()) * getGameBoardView().getBoardColumnWidth();
-                    float y1 = (canvas.getHeight())-((row + getPosition().getBoardMatrixRow()) * getGameBoardView().getBoardRowHeight());
-                    canvas.drawRect(x0, y0, x1, y1, getForeground());
-                    canvas.drawRect(x0, y0, x1, y1, getBorder());
-                }
-            }
-        }
+    SpecialTetromino(Board board, Shape shape, ShapeRotations rotations) {
+        super(board, shape, rotations);
     }
 
     /**
@@ -62,18 +39,19 @@ public class SpecialTetromino extends Tetromino {
 
         private int[][] shapeMatrix;
         private boolean hasRotation;
-        private GameBoardView gameBoardView;
+        private ShapeRotations rotations;
+        private Shape shape;
+        private Board board;
 
         /**
          * Constructor que inicializa valores por default.
          * 
-         * @param gameBoardView el tablero donde crear el nuevo tetromino.
+         * @param board el tablero donde crear el nuevo tetromino.
          */
-        Builder(GameBoardView gameBoardView) {
+        Builder(Board board) {
             hasRotation = DEFAULT_SHAPE.hasRotation();
-            shapeMatrix = new int[DEFAULT_SHAPE.getShapeMatrix().length][];
-            System.arraycopy(DEFAULT_SHAPE.getShapeMatrix(), 0, shapeMatrix, 0, DEFAULT_SHAPE.getShapeMatrix().length);
-            this.gameBoardView = gameBoardView;
+            shapeMatrix = DEFAULT_SHAPE.getShapeMatrix();
+            this.board = board;
         }
 
         /**
@@ -83,9 +61,10 @@ public class SpecialTetromino extends Tetromino {
          * @return este Builder.
          */
         Builder use(SpecialTetrominoShape shape) {
-            shapeMatrix = new int[shape.getShapeMatrix().length][];
-            System.arraycopy(shape.getShapeMatrix(), 0, shapeMatrix, 0, shape.getShapeMatrix().length);
+            shapeMatrix = shape.getShapeMatrix();
             hasRotation = shape.hasRotation();
+            rotations = shape.getRotations();
+            this.shape = shape;
             return this;
         }
 
@@ -96,8 +75,9 @@ public class SpecialTetromino extends Tetromino {
          * @return este Builder.
          */
         Builder setShape(int[][] shapeMatrix) {
-            this.shapeMatrix = new int[shapeMatrix.length][];
-            System.arraycopy(shapeMatrix, 0, this.shapeMatrix, 0, shapeMatrix.length);
+            this.shapeMatrix = shapeMatrix;
+            rotations = null;
+            shape = null;
             return this;
         }
 
@@ -108,6 +88,8 @@ public class SpecialTetromino extends Tetromino {
          */
         Builder hasRotation() {
             this.hasRotation = true;
+            rotations = null;
+            shape = null;
             return this;
         }
 
@@ -115,7 +97,8 @@ public class SpecialTetromino extends Tetromino {
          * @return un nuevo tetromino.
          */
         SpecialTetromino build() {
-            return new SpecialTetromino(gameBoardView, shapeMatrix, hasRotation);
+            if (rotations == null) rotations = new ShapeRotations(shapeMatrix, hasRotation);
+            return new SpecialTetromino(board, shape, rotations);
         }
     }
 }
\ No newline at end of file
@@ -41,6 +41,7 @@ public enum SpecialTetrominoShape implements Shape {
 
     private final int[][] shapeMatrix;
     private final boolean hasRotation;
+    private final ShapeRotations rotations;
 
     /**
      * Construye una de las figura por default.
@@ -51,6 +52,7 @@ public enum SpecialTetrominoShape implements Shape {
     SpecialTetrominoShape(int[][] shapeMatrix, boolean hasRotation) {
         this.shapeMatrix = shapeMatrix;
         this.hasRotation = hasRotation;
+        this.rotations = new ShapeRotations(shapeMatrix, hasRotation);
     }
 
     @Override
@@ -62,4 +64,9 @@ public enum SpecialTetrominoShape implements Shape {
     public boolean hasRotation() {
         return hasRotation;
     }
+
+    /** @return la tabla con todas las rotaciones de la figura. */
+    ShapeRotations getRotations() {
+        return rotations;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+import android.os.SystemClock;
+import android.view.MotionEvent;
+
+/**
+ * Convierte el arrastre del dedo en movimientos de celda en celda. Lee también las muestras
+ * históricas de cada MotionEvent, las que llegaron entre un cuadro y otro, así que un arrastre
+ * rápido no se salta columnas; cada movimiento lleva el tiempo de la muestra que lo causó para
+ * medir cuánto tarda en atenderse. Como desde la versión 1.0, en cada muestra solo cuenta el eje
+ * por donde más avanzó el dedo, así que arrastrar en diagonal no mueve a los lados y hacia abajo
+ * a la vez.
+ *
+ * @author Daniel Pedraza-Arcega
+ * @since 1.3
+ */
+final class SwipeTracker {
+
+    private final OnSwipeListener swipeListener;
+    private float columnWidth;
+    private float rowHeight;
+    private float anchorX;
+    private float anchorY;
+    private float lastX;
+    private float lastY;
+    private boolean isTracking;
+
+    /** @param swipeListener quien recibe cada movimiento. */
+    SwipeTracker(OnSwipeListener swipeListener) {
+        this.swipeListener = swipeListener;
+    }
+
+    /**
+     * @param columnWidth cuánto hay que arrastrar para moverse una columna.
+     * @param rowHeight cuánto hay que arrastrar para bajar una fila.
+     */
+    void setCellSize(float columnWidth, float rowHeight) {
+        this.columnWidth = columnWidth;
+        this.rowHeight = rowHeight;
+    }
+
+    /** @param event el evento del dedo con todas sus muestras. */
+    void onTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN: down(event.getX(), event.getY()); break;
+            case MotionEvent.ACTION_MOVE:
+                for (int sample = 0; sample < event.getHistorySize(); sample++) {
+                    track(event.getHistoricalX(sample), event.getHistoricalY(sample), event.getHistoricalEventTime(sample));
+                }
+                track(event.getX(), event.getY(), event.getEventTime());
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL: stop(); break;
+        }
+    }
+
+    /**
+     * Empieza a seguir el dedo desde donde tocó.
+     *
+     * @param x la coordenada x del dedo.
+     * @param y la coordenada y del dedo.
+     */
+    void down(float x, float y) {
+        anchorX = x;
+        anchorY = y;
+        lastX = x;
+        lastY = y;
+        isTracking = true;
+    }
+
+    /**
+     * Mueve una celda por cada columna o fila completa que avanzó el dedo desde el último
+     * movimiento, solo en el eje donde más avanzó desde la muestra anterior; lo que avanzó en el
+     * otro eje no se cuenta.
+     *
+     * @param x la coordenada x de la muestra.
+     * @param y la coordenada y de la muestra.
+     * @param eventTime el tiempo de la muestra en la base de {@link SystemClock#uptimeMillis()}.
+     */
+    void track(float x, float y, long eventTime) {
+        if (columnWidth <= 0 || rowHeight <= 0) return;
+        float dx = x - lastX;
+        float dy = y - lastY;
+        lastX = x;
+        lastY = y;
+        if (Math.abs(dx) > Math.abs(dy)) {
+            anchorY += dy;
+            while (isTracking && x - anchorX >= columnWidth) {
+                anchorX += columnWidth;
+                dispatch(Tetromino.Direction.RIGHT, eventTime);
+            }
+            while (isTracking && anchorX - x >= columnWidth) {
+                anchorX -= columnWidth;
+                dispatch(Tetromino.Direction.LEFT, eventTime);
+            }
+        } else {
+            anchorX += dx;
+            while (isTracking && y - anchorY >= rowHeight) {
+                anchorY += rowHeight;
+                dispatch(Tetromino.Direction.DOWN, eventTime);
+            }
+            // Hacia arriba no se mueve, pero desde ahí se vuelve a contar
+            if (y < anchorY) anchorY = y;
+        }
+    }
+
+    /** Deja de seguir el dedo hasta que vuelva a tocar. */
+    void stop() {
+        isTracking = false;
+    }
+
+    /**
+     * Avisa un movimiento.
+     *
+     * @param direction hacia dónde moverse.
+     * @param eventTime el tiempo de la muestra.
+     */
+    private void dispatch(Tetromino.Direction direction, long eventTime) {
+        if (!swipeListener.onSwipe(direction, eventTime)) stop();
+    }
+
+    /**
+     * Listener que escuchará los movimientos del arrastre.
+     *
+     * @author Daniel Pedraza-Arcega
+     * @since 1.3
+     */
+    static interface OnSwipeListener {
+
+        /**
+         * Ejecuta este método por cada celda que avanzó el dedo.
+         *
+         * @param direction {@link Tetromino.Direction#LEFT}, {@link Tetromino.Direction#RIGHT} o
+         *        {@link Tetromino.Direction#DOWN}.
+         * @param eventTime el tiempo de la muestra que causó el movimiento.
+         * @return si se sigue el arrastre o no; con false se ignora hasta que vuelva a tocar.
+         */
+        boolean onSwipe(Tetromino.Direction direction, long eventTime);
+    }
+}
@@ -15,9 +15,6 @@
  */
 package mx.udlap.is522.tedroid.view;
 
-import android.graphics.Canvas;
-import android.graphics.Paint;
-
 import java.util.Arrays;
 
 /**
@@ -28,52 +25,41 @@ import java.util.Arrays;
  */
 public class Tetromino {
 
-    private final GameBoardView gameBoardView;
-    private final Paint foreground;
-    private final Paint border;
+    private final Board board;
     private final Position position;
-    private final boolean hasRotation;
 
-    private int[][] shapeMatrix;
+    private Shape shape;
+    private ShapeRotations rotations;
+
+    private int rotation;
 
     /**
      * Construye un nuevo tetromino.
      * 
-     * @param gameBoardView el GameBoardView donde será dibujado.
-     * @param shapeMatrix la forma que tendrá.
-     * @param hasRotation si rota o no.
+     * @param board el tablero donde se moverá.
+     * @param shape la figura predefinida que tendrá o {@code null} si es una figura personalizada.
+     * @param rotations la tabla de rotaciones de la forma que tendrá.
      */
-    Tetromino(GameBoardView gameBoardView, int[][] shapeMatrix, boolean hasRotation) {
-        this.gameBoardView = gameBoardView;
-        this.shapeMatrix = shapeMatrix;
-        this.hasRotation = hasRotation;
+    Tetromino(Board board, Shape shape, ShapeRotations rotations) {
+        this.board = board;
+        this.shape = shape;
+        this.rotations = rotations;
         this.position = new Position();
-        this.foreground = new Paint();
-        this.foreground.setStyle(Paint.Style.FILL); // El color se toma de la matriz
-        this.border = new Paint();
-        this.border.setStyle(Paint.Style.STROKE);
-        this.border.setColor(gameBoardView.getContext().getResources().getColor(Shape.BORDER_COLOR));
     }
 
     /**
-     * Dibuja este tetromino en un canvas con las dimensiones de su tablero de juego asosiado.
+     * Reutiliza este tetromino con otra figura para no crear uno nuevo cada vez que sale una
+     * pieza. Regresa a la rotación inicial y a la esquina superior izquierda del tablero.
      * 
-     * @param canvas el objeto donde dibujar.
+     * @param shape la figura predefinida que tendrá.
+     * @param rotations la tabla de rotaciones de la figura.
      */
-    void drawOn(Canvas canvas) {
-        for (int row = 0; row < shapeMatrix.length; row++) {
-            for (int column = 0; column < shapeMatrix[0].length; column++) {
-                if (shapeMatrix[row][column] != android.R.color.transparent) {
-                    foreground.setColor(gameBoardView.getContext().getResources().getColor(shapeMatrix[row][column]));
-                    float x0 = (column + position.boardMatrixColumn) * gameBoardView.getBoardColumnWidth();
-                    float y0 = (row + position.boardMatrixRow) * gameBoardView.getBoardRowHeight();
-                    float x1 = (column + 1 + position.boardMatrixColumn) * gameBoardView.getBoardColumnWidth();
-                    float y1 = (row + 1 + position.boardMatrixRow) * gameBoardView.getBoardRowHeight();
-                    canvas.drawRect(x0, y0, x1, y1, foreground);
-                    canvas.drawRect(x0, y0, x1, y1, border);
-                }
-            }
-        }
+    void reset(Shape shape, ShapeRotations rotations) {
+        this.shape = shape;
+        this.rotations = rotations;
+        rotation = 0;
+        position.boardMatrixRow = 0;
+        position.boardMatrixColumn = 0;
     }
 
     /**
@@ -91,18 +77,48 @@ public class Tetromino {
         }
     }
 
+    /**
+     * Baja este tetromino hasta donde ya no puede caer más.
+     * 
+     * @return cuántas filas bajó.
+     */
+    int drop() {
+        int distance = getDropDistance();
+        position.boardMatrixRow += distance;
+        return distance;
+    }
+
+    /**
+     * @return cuántas filas puede caer este tetromino. Se calcula en un paso con las cimas de las
+     *         columnas del tablero y solo se busca fila por fila si esta debajo de alguna celda
+     *         ocupada.
+     */
+    int getDropDistance() {
+        int distance = board.dropDistance(rotations.getBottomProfile(rotation), position.boardMatrixRow, position.boardMatrixColumn);
+        if (distance == -1) {
+            distance = 0;
+            while (canFit(rotation, position.boardMatrixRow + distance + 1, position.boardMatrixColumn)) distance++;
+        }
+
+        return distance;
+    }
+
+    /** @return la fila donde quedaría la esquina superior izquierda si cayera hasta el fondo. */
+    int getGhostRow() {
+        return position.boardMatrixRow + getDropDistance();
+    }
+
     /**
      * Centra este tetromino en el tablero padre.
      * 
      * @return si se traslapa con otras piezas o no.
      */
-    boolean centerOnGameBoardView() {
-        int[][] boardMatrix = gameBoardView.getBoardMatrix();
-        int boardCenterX = boardMatrix[0].length / 2;
-        int shapeCenterX = shapeMatrix[0].length / 2;
+    boolean centerOnBoard() {
+        int boardCenterX = board.getColumns() / 2;
+        int shapeCenterX = rotations.getColumns(rotation) / 2;
         int xMoves = boardCenterX - shapeCenterX;
         position.boardMatrixColumn = xMoves;
-        return canFit(getShapeMatrix());
+        return canFit(rotation, position.boardMatrixRow, position.boardMatrixColumn);
     }
 
     /**
@@ -111,17 +127,10 @@ public class Tetromino {
      * @return si se pudo mover o no.
      */
     boolean rotate() {
-        if (hasRotation) {
-            int[][] originalShapeMatrix = shapeMatrix;
-            int[][] newShapeMatrix = new int[originalShapeMatrix[0].length][originalShapeMatrix.length];
-            for (int row = 0; row < originalShapeMatrix.length; row++) {
-                for (int column = 0; column < originalShapeMatrix[0].length; column++) {
-                    newShapeMatrix[column][originalShapeMatrix.length - 1 - row] = originalShapeMatrix[row][column];
-                }
-            }
-
-            if (canFit(newShapeMatrix)) {
-                shapeMatrix = newShapeMatrix;
+        if (hasRotation()) {
+            int nextRotation = rotations.next(rotation);
+            if (canFit(nextRotation, position.boardMatrixRow, position.boardMatrixColumn)) {
+                rotation = nextRotation;
                 return true;
             }
         }
@@ -131,12 +140,22 @@ public class Tetromino {
 
     /** @return una matriz de 0s y 1s con la forma de este tetromino. */
     int[][] getShapeMatrix() {
-        return shapeMatrix;
+        return rotations.getShapeMatrix(rotation);
+    }
+
+    /** @return una matriz de índices de {@link ColorIndex} con la forma de este tetromino. */
+    int[][] getIndexMatrix() {
+        return rotations.getIndexMatrix(rotation);
+    }
+
+    /** @return las máscaras de bits por fila de la forma de este tetromino. */
+    int[] getShapeRowMasks() {
+        return rotations.getShapeRowMasks(rotation);
     }
 
     /** @return si la figura tiene o no rotación este tetromino. */
     boolean hasRotation() {
-        return hasRotation;
+        return rotations.size() > 1;
     }
 
     /**
@@ -147,19 +166,14 @@ public class Tetromino {
         return position;
     }
 
-    /** @return el GameBoardView donde se encuentra. */
-    GameBoardView getGameBoardView() {
-        return gameBoardView;
-    }
-
-    /** @return el Paint con el que se pinta la superficie. */
-    Paint getForeground() {
-        return foreground;
+    /** @return el tablero donde se encuentra. */
+    Board getBoard() {
+        return board;
     }
 
-    /** @return el Paint con el que se pinta el borde. */
-    Paint getBorder() {
-        return border;
+    /** @return la figura predefinida de este tetromino o {@code null} si es personalizada. */
+    Shape getShape() {
+        return shape;
     }
 
     /**
@@ -204,31 +218,6 @@ public class Tetromino {
         return false;
     }
 
-    /**
-     * Genera una predicción poniendo el tetromino en el lugar en el que quedaria después de
-     * rotarse.
-     * 
-     * @param rotatedShape la matriz rotada.
-     * @return si cupo o no después de moverse.
-     */
-    private boolean canFit(int[][] rotatedShape) {
-        int[][] boardMatrix = gameBoardView.getBoardMatrix();
-        for (int row = 0; row < rotatedShape.length; row++) {
-            for (int column = 0; column < rotatedShape[0].length; column++) {
-                int boardMatrixRow = position.boardMatrixRow + row;
-                int boardMatrixColumn = position.boardMatrixColumn + column;
-                if (isRowOutOfBoundsOfBoard(boardMatrixRow) || 
-                        isColumnOutOfBoundsOfBoard(boardMatrixColumn) || 
-                        (boardMatrix[boardMatrixRow][boardMatrixColumn] != android.R.color.transparent && 
-                        rotatedShape[row][column] != android.R.color.transparent)) {
-                    return false;
-                }
-            }
-        }
-
-        return true;
-    }
-
     /**
      * Genera una predicción poniendo el tetromino en el lugar en el que quedaria después de
      * moverse.
@@ -237,46 +226,26 @@ public class Tetromino {
      * @return si cupo o no después de moverse.
      */
     private boolean canFit(Direction direction) {
-        int[][] shape = getShapeMatrix();
-        int[][] boardMatrix = gameBoardView.getBoardMatrix();
-        for (int row = 0; row < shape.length; row++) {
-            for (int column = 0; column < shape[0].length; column++) {
-                int boardMatrixRow = position.boardMatrixRow + row;
-                int boardMatrixColumn = position.boardMatrixColumn + column;
-                switch (direction) {
-                    case DOWN: boardMatrixRow++; break;
-                    case LEFT: boardMatrixColumn--; break;
-                    case RIGHT: boardMatrixColumn++; break;
-                    default: break;
-                }
-                if (isRowOutOfBoundsOfBoard(boardMatrixRow) || 
-                        isColumnOutOfBoundsOfBoard(boardMatrixColumn) || 
-                        (boardMatrix[boardMatrixRow][boardMatrixColumn] != android.R.color.transparent && 
-                        shape[row][column] != android.R.color.transparent)) {
-                    return false;
-                }
-            }
+        int boardMatrixRow = position.boardMatrixRow;
+        int boardMatrixColumn = position.boardMatrixColumn;
+        switch (direction) {
+            case DOWN: boardMatrixRow++; break;
+            case LEFT: boardMatrixColumn--; break;
+            case RIGHT: boardMatrixColumn++; break;
+            default: break;
         }
 
-        return true;
-    }
-
-    /**
-     * @param row la fila.
-     * @return si la fila esta fuera o no de los indices del tablero.
-     */
-    private boolean isRowOutOfBoundsOfBoard(int row) {
-        int[][] boardMatrix = gameBoardView.getBoardMatrix();
-        return row < 0 || row >= boardMatrix.length;
+        return canFit(rotation, boardMatrixRow, boardMatrixColumn);
     }
 
     /**
-     * @param column la columna.
-     * @return si la columna esta fuera o no de los indices del tablero.
+     * @param rotation el índice de la rotación en la tabla de rotaciones.
+     * @param boardMatrixRow la fila donde quedaria la esquina superior izquierda.
+     * @param boardMatrixColumn la columna donde quedaria la esquina superior izquierda.
+     * @return si cabe o no en esa posición del tablero.
      */
-    private boolean isColumnOutOfBoundsOfBoard(int column) {
-        int[][] boardMatrix = gameBoardView.getBoardMatrix();
-        return column < 0 || column >= boardMatrix[0].length;
+    private boolean canFit(int rotation, int boardMatrixRow, int boardMatrixColumn) {
+        return board.canFit(rotations.getShapeRowMasks(rotation), rotations.getColumns(rotation), boardMatrixRow, boardMatrixColumn);
     }
 
     /** {@inheritDoc} */
@@ -284,8 +253,8 @@ public class Tetromino {
     public int hashCode() {
         final int prime = 31;
         int result = 1;
-        result = prime * result + (hasRotation ? 1231 : 1237);
-        result = prime * result + Arrays.deepHashCode(shapeMatrix);
+        result = prime * result + (hasRotation() ? 1231 : 1237);
+        result = prime * result + Arrays.deepHashCode(getShapeMatrix());
         return result;
     }
 
@@ -296,8 +265,8 @@ public class Tetromino {
         if (obj == null) return false;
         if (getClass() != obj.getClass()) return false;
         Tetromino other = (Tetromino) obj;
-        if (hasRotation != other.hasRotation) return false;
-        if (!Arrays.deepEquals(shapeMatrix, other.shapeMatrix)) return false;
+        if (hasRotation() != other.hasRotation()) return false;
+        if (!Arrays.deepEquals(getShapeMatrix(), other.getShapeMatrix())) return false;
         return true;
     }
 
@@ -361,18 +330,19 @@ public class Tetromino {
 
         private int[][] shapeMatrix;
         private boolean hasRotation;
-        private GameBoardView gameBoardView;
+        private ShapeRotations rotations;
+        private Shape shape;
+        private Board board;
 
         /**
          * Constructor que inicializa valores por default.
          * 
-         * @param gameBoardView el tablero donde crear el nuevo tetromino.
+         * @param board el tablero donde crear el nuevo tetromino.
          */
-        Builder(GameBoardView gameBoardView) {
+        Builder(Board board) {
             hasRotation = DEFAULT_SHAPE.hasRotation();
-            shapeMatrix = new int[DEFAULT_SHAPE.getShapeMatrix().length][];
-            System.arraycopy(DEFAULT_SHAPE.getShapeMatrix(), 0, shapeMatrix, 0, DEFAULT_SHAPE.getShapeMatrix().length);
-            this.gameBoardView = gameBoardView;
+            shapeMatrix = DEFAULT_SHAPE.getShapeMatrix();
+            this.board = board;
         }
 
         /**
@@ -382,9 +352,10 @@ public class Tetromino {
          * @return este Builder.
          */
         Builder use(TetrominoShape shape) {
-            shapeMatrix = new int[shape.getShapeMatrix().length][];
-            System.arraycopy(shape.getShapeMatrix(), 0, shapeMatrix, 0, shape.getShapeMatrix().length);
+            shapeMatrix = shape.getShapeMatrix();
             hasRotation = shape.hasRotation();
+            rotations = shape.getRotations();
+            this.shape = shape;
             return this;
         }
 
@@ -395,8 +366,9 @@ public class Tetromino {
          * @return este Builder.
          */
         Builder setShape(int[][] shapeMatrix) {
-            this.shapeMatrix = new int[shapeMatrix.length][];
-            System.arraycopy(shapeMatrix, 0, this.shapeMatrix, 0, shapeMatrix.length);
+            this.shapeMatrix = shapeMatrix;
+            rotations = null;
+            shape = null;
             return this;
         }
 
@@ -407,6 +379,8 @@ public class Tetromino {
          */
         Builder hasRotation() {
             this.hasRotation = true;
+            rotations = null;
+            shape = null;
             return this;
         }
 
@@ -414,7 +388,8 @@ public class Tetromino {
          * @return un nuevo tetromino.
          */
         Tetromino build() {
-            return new Tetromino(gameBoardView, shapeMatrix, hasRotation);
+            if (rotations == null) rotations = new ShapeRotations(shapeMatrix, hasRotation);
+            return new Tetromino(board, shape, rotations);
         }
     }
 
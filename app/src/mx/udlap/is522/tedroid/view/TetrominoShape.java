@@ -35,6 +35,7 @@ public enum TetrominoShape implements Shape {
 
     private final int[][] shapeMatrix;
     private final boolean hasRotation;
+    private final ShapeRotations rotations;
 
     /**
      * Construye una de las figura por default.
@@ -45,6 +46,7 @@ public enum TetrominoShape implements Shape {
     TetrominoShape(int[][] shapeMatrix, boolean hasRotation) {
         this.shapeMatrix = shapeMatrix;
         this.hasRotation = hasRotation;
+        this.rotations = new ShapeRotations(shapeMatrix, hasRotation);
     }
 
     /** @return una matriz de android.R.color.transparent y R.color.ids con la forma de la figura. */
@@ -58,4 +60,9 @@ public enum TetrominoShape implements Shape {
     public boolean hasRotation() {
         return hasRotation;
     }
+
+    /** @return la tabla con todas las rotaciones de la figura. */
+    ShapeRotations getRotations() {
+        return rotations;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import mx.udlap.is522.tedroid.R;
+
+public class BoardTest {
+
+    @Test
+    public void shouldBuildRowMasks() throws Exception {
+        assertThat(Board.rowMasksOf(TetrominoShape.S.getShapeMatrix())).isEqualTo(new int[] { 0b110, 0b011 });
+        assertThat(Board.rowMasksOf(TetrominoShape.I.getShapeMatrix())).isEqualTo(new int[] { 0b1111 });
+    }
+
+    @Test
+    public void shouldFitInsideBounds() throws Exception {
+        Board board = new Board(4, 5);
+        int[] shapeRowMasks = Board.rowMasksOf(TetrominoShape.O.getShapeMatrix());
+
+        assertThat(board.canFit(shapeRowMasks, 2, 0, 0)).isTrue();
+        assertThat(board.canFit(shapeRowMasks, 2, 2, 3)).isTrue();
+        assertThat(board.canFit(shapeRowMasks, 2, 3, 0)).isFalse();
+        assertThat(board.canFit(shapeRowMasks, 2, 0, 4)).isFalse();
+        assertThat(board.canFit(shapeRowMasks, 2, -1, 0)).isFalse();
+        assertThat(board.canFit(shapeRowMasks, 2, 0, -1)).isFalse();
+    }
+
+    @Test
+    public void shouldNotFitOverOccupiedCells() throws Exception {
+        Board board = new Board(4, 5);
+        board.set(3, 1, ColorIndex.indexOf(R.color.tetromino_t));
+        int[] shapeRowMasks = Board.rowMasksOf(TetrominoShape.S.getShapeMatrix());
+
+        assertThat(board.isEmpty(3, 1)).isFalse();
+        assertThat(board.canFit(shapeRowMasks, 3, 2, 0)).isFalse();
+        assertThat(board.canFit(shapeRowMasks, 3, 2, 2)).isTrue();
+
+        board.set(3, 1, ColorIndex.EMPTY);
+        assertThat(board.isEmpty(3, 1)).isTrue();
+        assertThat(board.canFit(shapeRowMasks, 3, 2, 0)).isTrue();
+    }
+
+    @Test
+    public void shouldPlaceShape() throws Exception {
+        Board board = new Board(4, 5);
+        int[][] shapeMatrix = TetrominoShape.T.getShapeMatrix();
+        board.place(ColorIndex.indexMatrixOf(shapeMatrix), Board.rowMasksOf(shapeMatrix), 2, 1);
+
+        assertThat(board.getFilledCells(2)).isEqualTo(3);
+        assertThat(board.getFilledCells(3)).isEqualTo(1);
+        assertThat(board.get(3, 2)).isEqualTo(ColorIndex.indexOf(R.color.tetromino_t));
+        assertThat(board.isEmpty(3, 1)).isTrue();
+    }
+
+    @Test
+    public void shouldClearCompletedRows() throws Exception {
+        Board board = new Board(5, 2);
+        board.set(1, 0, ColorIndex.indexOf(R.color.tetromino_i));
+        board.set(2, 0, ColorIndex.indexOf(R.color.tetromino_o));
+        board.set(2, 1, ColorIndex.indexOf(R.color.tetromino_o));
+        board.set(3, 1, ColorIndex.indexOf(R.color.tetromino_t));
+        board.set(4, 0, ColorIndex.indexOf(R.color.tetromino_s));
+        board.set(4, 1, ColorIndex.indexOf(R.color.tetromino_s));
+
+        assertThat(board.getFilledCells(1)).isEqualTo(1);
+        assertThat(board.getFilledCells(2)).isEqualTo(2);
+        assertThat(board.findCompletedRows(1, 4)).isEqualTo(0b1010);
+        assertThat(board.findCompletedRows(2, 4)).isEqualTo(0b101);
+
+        assertThat(board.clearRows(2, 0b101)).isEqualTo(2);
+        assertThat(board.get(4, 1)).isEqualTo(ColorIndex.indexOf(R.color.tetromino_t));
+        assertThat(board.isEmpty(4, 0)).isTrue();
+        assertThat(board.get(3, 0)).isEqualTo(ColorIndex.indexOf(R.color.tetromino_i));
+        assertThat(board.isEmpty(3, 1)).isTrue();
+        for (int row = 0; row < 3; row++) {
+            assertThat(board.isEmpty(row, 0)).isTrue();
+            assertThat(board.isEmpty(row, 1)).isTrue();
+            assertThat(board.get(row, 0)).isEqualTo(ColorIndex.EMPTY);
+        }
+
+        assertThat(board.findCompletedRows(0, 4)).isZero();
+    }
+
+    @Test
+    public void shouldCopyAndCompareBoards() throws Exception {
+        Board board = new Board(4, 5);
+        board.set(3, 1, ColorIndex.indexOf(R.color.tetromino_t));
+        board.set(2, 4, ColorIndex.indexOf(R.color.tetromino_z));
+        Board snapshot = new Board(4, 5);
+
+        assertThat(snapshot).isNotEqualTo(board);
+        snapshot.copyFrom(board);
+        assertThat(snapshot).isEqualTo(board);
+        assertThat(snapshot.hashCode()).isEqualTo(board.hashCode());
+        assertThat(snapshot.getColumnTop(4)).isEqualTo(2);
+        assertThat(snapshot.isEmpty(3, 1)).isFalse();
+        assertThat(snapshot.getCells()).hasSize(20);
+    }
+
+    @Test
+    public void shouldTrackDirtyRows() throws Exception {
+        Board board = new Board(6, 2);
+        assertThat(board.hasDirtyRows()).isTrue();
+        assertThat(board.getDirtyTopRow()).isZero();
+        assertThat(board.getDirtyBottomRow()).isEqualTo(5);
+
+        board.clearDirtyRows();
+        assertThat(board.hasDirtyRows()).isFalse();
+
+        int[][] shapeMatrix = TetrominoShape.O.getShapeMatrix();
+        board.place(ColorIndex.indexMatrixOf(shapeMatrix), Board.rowMasksOf(shapeMatrix), 4, 0);
+        assertThat(board.getDirtyTopRow()).isEqualTo(4);
+        assertThat(board.getDirtyBottomRow()).isEqualTo(5);
+
+        board.clearDirtyRows();
+        board.clearRows(4, board.findCompletedRows(4, 5));
+        assertThat(board.getDirtyTopRow()).isZero();
+        assertThat(board.getDirtyBottomRow()).isEqualTo(5);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import mx.udlap.is522.tedroid.R;
+
+public class ColorIndexTest {
+
+    @Test
+    public void shouldMapColorsToIndices() throws Exception {
+        assertThat(ColorIndex.indexOf(android.R.color.transparent)).isEqualTo(ColorIndex.EMPTY);
+        for (TetrominoShape shape : TetrominoShape.values()) {
+            for (int[] row : shape.getShapeMatrix()) {
+                for (int colorId : row) {
+                    int index = ColorIndex.indexOf(colorId);
+                    assertThat(index).isGreaterThanOrEqualTo(0).isLessThan(ColorIndex.size());
+                    assertThat(ColorIndex.colorIdOf(index)).isEqualTo(colorId);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldBuildIndexMatrix() throws Exception {
+        int[][] indexMatrix = ColorIndex.indexMatrixOf(TetrominoShape.S.getShapeMatrix());
+        int s = ColorIndex.indexOf(R.color.tetromino_s);
+
+        assertThat(indexMatrix).isEqualTo(new int[][] { { ColorIndex.EMPTY, s, s }, { s, s, ColorIndex.EMPTY } });
+    }
+
+    @Test
+    public void shouldAddCustomColorOnce() throws Exception {
+        int index = ColorIndex.indexOf(android.R.color.black);
+
+        assertThat(index).isNotEqualTo(ColorIndex.EMPTY).isLessThan(ColorIndex.size());
+        assertThat(ColorIndex.indexOf(android.R.color.black)).isEqualTo(index);
+        assertThat(ColorIndex.colorIdOf(index)).isEqualTo(android.R.color.black);
+    }
+}
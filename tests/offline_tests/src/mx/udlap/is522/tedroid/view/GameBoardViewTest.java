@@ -17,10 +17,6 @@ package mx.udlap.is522.tedroid.view;
 
 import static org.fest.assertions.api.Assertions.assertThat;
 
-import static org.mockito.Mockito.CALLS_REAL_METHODS;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
-
 import android.app.Activity;
 import android.content.SharedPreferences;
 
@@ -28,9 +24,6 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
-import org.mockito.invocation.InvocationOnMock;
-import org.mockito.stubbing.Answer;
-
 import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.shadows.ShadowPreferenceManager;
@@ -38,6 +31,7 @@ import org.robolectric.shadows.ShadowPreferenceManager;
 import mx.udlap.is522.tedroid.R;
 
 import java.util.LinkedList;
+import java.util.Random;
 
 @RunWith(RobolectricTestRunner.class)
 public class GameBoardViewTest {
@@ -58,33 +52,31 @@ public class GameBoardViewTest {
 
     @Test
     public void shouldNotRepeatMoreThan2EqualTetrominos() throws Exception {
-        GameBoardView gameBoardViewMock = mock(GameBoardView.class, CALLS_REAL_METHODS);
-        when(gameBoardViewMock.getContext()).thenReturn(dummyActivity);
-        gameBoardViewMock.setUp();
-
-        final LinkedList<Tetromino> tetrominoQueue = buildTestTetrominos(gameBoardViewMock);
-        when(gameBoardViewMock.randomTetromino()).thenAnswer(new Answer<Tetromino>() {
+        GameBoardView gameBoardView = new GameBoardView(dummyActivity);
+        GameEngine gameEngine = gameBoardView.getGameEngine();
+        final LinkedList<Integer> shapeQueue = buildTestShapes();
+        gameEngine.setRandomizer(new Randomizer.NoTriple(TetrominoShape.values().length, new Random() {
             @Override
-            public Tetromino answer(InvocationOnMock invocation) {
-                return tetrominoQueue.poll();
+            public int nextInt(int n) {
+                return shapeQueue.poll();
             }
-        });
+        }));
 
-        gameBoardViewMock.setUpNewTetrominos();
-        assertThat(gameBoardViewMock.getCurrentTetromino().getShapeMatrix()).isNotNull().isEqualTo(TetrominoShape.O.getShapeMatrix());
-        assertThat(gameBoardViewMock.getNextTetromino().getShapeMatrix()).isNotNull().isEqualTo(TetrominoShape.O.getShapeMatrix());
+        gameEngine.setUpNewTetrominos();
+        assertThat(gameBoardView.getCurrentTetromino().getShapeMatrix()).isNotNull().isEqualTo(TetrominoShape.O.getShapeMatrix());
+        assertThat(gameBoardView.getNextTetromino().getShapeMatrix()).isNotNull().isEqualTo(TetrominoShape.O.getShapeMatrix());
         
-        gameBoardViewMock.setUpNewTetrominos();
-        assertThat(gameBoardViewMock.getCurrentTetromino().getShapeMatrix()).isNotNull().isEqualTo(TetrominoShape.O.getShapeMatrix());
-        assertThat(gameBoardViewMock.getNextTetromino().getShapeMatrix()).isNotNull().isEqualTo(TetrominoShape.T.getShapeMatrix());
+        gameEngine.setUpNewTetrominos();
+        assertThat(gameBoardView.getCurrentTetromino().getShapeMatrix()).isNotNull().isEqualTo(TetrominoShape.O.getShapeMatrix());
+        assertThat(gameBoardView.getNextTetromino().getShapeMatrix()).isNotNull().isEqualTo(TetrominoShape.T.getShapeMatrix());
         
-        gameBoardViewMock.setUpNewTetrominos();
-        assertThat(gameBoardViewMock.getCurrentTetromino().getShapeMatrix()).isNotNull().isEqualTo(TetrominoShape.T.getShapeMatrix());
-        assertThat(gameBoardViewMock.getNextTetromino().getShapeMatrix()).isNotNull().isEqualTo(TetrominoShape.T.getShapeMatrix());
+        gameEngine.setUpNewTetrominos();
+        assertThat(gameBoardView.getCurrentTetromino().getShapeMatrix()).isNotNull().isEqualTo(TetrominoShape.T.getShapeMatrix());
+        assertThat(gameBoardView.getNextTetromino().getShapeMatrix()).isNotNull().isEqualTo(TetrominoShape.T.getShapeMatrix());
         
-        gameBoardViewMock.setUpNewTetrominos();
-        assertThat(gameBoardViewMock.getCurrentTetromino().getShapeMatrix()).isNotNull().isEqualTo(TetrominoShape.T.getShapeMatrix());
-        assertThat(gameBoardViewMock.getNextTetromino().getShapeMatrix()).isNotNull().isEqualTo(TetrominoShape.J.getShapeMatrix());
+        gameEngine.setUpNewTetrominos();
+        assertThat(gameBoardView.getCurrentTetromino().getShapeMatrix()).isNotNull().isEqualTo(TetrominoShape.T.getShapeMatrix());
+        assertThat(gameBoardView.getNextTetromino().getShapeMatrix()).isNotNull().isEqualTo(TetrominoShape.J.getShapeMatrix());
     }
 
     @Test
@@ -102,29 +94,15 @@ public class GameBoardViewTest {
         }
     }
 
-    private LinkedList<Tetromino> buildTestTetrominos(GameBoardView gameBoardView) {
-        LinkedList<Tetromino> tetrominos = new LinkedList<>();
-        tetrominos.add(new Tetromino.Builder(gameBoardView)
-            .use(TetrominoShape.O)
-            .build());
-        tetrominos.add(new Tetromino.Builder(gameBoardView)
-            .use(TetrominoShape.O)
-            .build());
-        tetrominos.add(new Tetromino.Builder(gameBoardView)
-            .use(TetrominoShape.O)
-            .build());
-        tetrominos.add(new Tetromino.Builder(gameBoardView)
-            .use(TetrominoShape.O)
-            .build());
-        tetrominos.add(new Tetromino.Builder(gameBoardView)
-            .use(TetrominoShape.T)
-            .build());
-        tetrominos.add(new Tetromino.Builder(gameBoardView)
-            .use(TetrominoShape.T)
-            .build());
-        tetrominos.add(new Tetromino.Builder(gameBoardView)
-            .use(TetrominoShape.J)
-            .build());
-        return tetrominos;
+    private LinkedList<Integer> buildTestShapes() {
+        LinkedList<Integer> shapes = new LinkedList<>();
+        shapes.add(TetrominoShape.O.ordinal());
+        shapes.add(TetrominoShape.O.ordinal());
+        shapes.add(TetrominoShape.O.ordinal());
+        shapes.add(TetrominoShape.O.ordinal());
+        shapes.add(TetrominoShape.T.ordinal());
+        shapes.add(TetrominoShape.T.ordinal());
+        shapes.add(TetrominoShape.J.ordinal());
+        return shapes;
     }
-}
\ No newline at end of file
+}
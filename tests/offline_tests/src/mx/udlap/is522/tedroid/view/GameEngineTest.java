@@ -0,0 +1,133 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import java.util.LinkedList;
+
+public class GameEngineTest {
+
+    @Test
+    public void shouldClearLinesAfterHardDrop() throws Exception {
+        final LinkedList<Tetromino> tetrominoQueue = new LinkedList<>();
+        GameEngine gameEngine = new GameEngine(4, 4) {
+            @Override
+            protected Tetromino randomTetromino() {
+                return tetrominoQueue.poll();
+            }
+        };
+        tetrominoQueue.addAll(buildTestTetrominos(gameEngine.getBoard(), TetrominoShape.I, TetrominoShape.O, TetrominoShape.T));
+        final int[] events = new int[3];
+        gameEngine.setOnGameEventListener(new GameEngine.SimpleOnGameEventListener() {
+            @Override
+            public void onHardDropped(int gridSpaces) {
+                events[0] = gridSpaces;
+            }
+
+            @Override
+            public void onClearedLines(int linesCleared) {
+                events[1] = linesCleared;
+            }
+
+            @Override
+            public void onTetrominoLocked() {
+                events[2]++;
+            }
+        });
+
+        gameEngine.start();
+        gameEngine.hardDrop();
+
+        assertThat(events).isEqualTo(new int[] { 3, 1, 1 });
+        assertThat(gameEngine.getCurrentTetromino().getShapeMatrix()).isEqualTo(TetrominoShape.O.getShapeMatrix());
+        for (int row = 0; row < gameEngine.getBoard().getRows(); row++) {
+            for (int column = 0; column < gameEngine.getBoard().getColumns(); column++) {
+                assertThat(gameEngine.getBoard().isEmpty(row, column)).isTrue();
+            }
+        }
+    }
+
+    @Test
+    public void shouldReuseTetrominosOnSpawn() throws Exception {
+        GameEngine gameEngine = new GameEngine();
+        gameEngine.setRandomizer(new Randomizer.Bag(TetrominoShape.values().length, 1L));
+        gameEngine.start();
+        Tetromino firstTetromino = gameEngine.getCurrentTetromino();
+        Tetromino secondTetromino = gameEngine.getNextTetromino();
+        Shape nextShape = secondTetromino.getShape();
+
+        gameEngine.hardDrop();
+
+        assertThat(gameEngine.getCurrentTetromino()).isSameAs(secondTetromino);
+        assertThat(gameEngine.getCurrentTetromino().getShape()).isSameAs(nextShape);
+        assertThat(gameEngine.getNextTetromino()).isSameAs(firstTetromino);
+        assertThat(gameEngine.getNextTetromino().getPosition().getBoardMatrixRow()).isZero();
+
+        gameEngine.hardDrop();
+
+        assertThat(gameEngine.getCurrentTetromino()).isSameAs(firstTetromino);
+        assertThat(gameEngine.getNextTetromino()).isSameAs(secondTetromino);
+    }
+
+    @Test
+    public void shouldIgnoreCommandsWhilePaused() throws Exception {
+        GameEngine gameEngine = new GameEngine();
+        gameEngine.start();
+        gameEngine.pause();
+
+        assertThat(gameEngine.moveLeft()).isFalse();
+        assertThat(gameEngine.moveRight()).isFalse();
+        assertThat(gameEngine.rotate()).isFalse();
+        assertThat(gameEngine.softDrop()).isFalse();
+
+        gameEngine.resume();
+        assertThat(gameEngine.moveLeft()).isTrue();
+    }
+
+    @Test
+    public void shouldPreviewUpcomingShapesInSpawnOrder() throws Exception {
+        GameEngine gameEngine = new GameEngine();
+        gameEngine.setRandomizer(new Randomizer.Bag(TetrominoShape.values().length, 7L));
+        gameEngine.setPreviewSize(3);
+        gameEngine.start();
+        Shape[] upcomingShapes = new Shape[5];
+
+        assertThat(gameEngine.getPreviewSize()).isEqualTo(3);
+        assertThat(gameEngine.getUpcomingShapes(upcomingShapes)).isEqualTo(3);
+        Shape[] preview = { upcomingShapes[0], upcomingShapes[1], upcomingShapes[2] };
+        for (Shape shape : preview) {
+            gameEngine.hardDrop();
+            assertThat(gameEngine.getCurrentTetromino().getShape()).isSameAs(shape);
+        }
+
+        Randomizer sameBag = new Randomizer.Bag(TetrominoShape.values().length, 7L);
+        sameBag.next();
+        for (Shape shape : preview) assertThat(shape).isSameAs(TetrominoShape.values()[sameBag.next()]);
+    }
+
+    private LinkedList<Tetromino> buildTestTetrominos(Board board, TetrominoShape... shapes) {
+        LinkedList<Tetromino> tetrominos = new LinkedList<>();
+        for (TetrominoShape shape : shapes) {
+            tetrominos.add(new Tetromino.Builder(board)
+                .use(shape)
+                .build());
+        }
+        return tetrominos;
+    }
+}
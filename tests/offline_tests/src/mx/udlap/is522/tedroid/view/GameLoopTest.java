@@ -0,0 +1,199 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class GameLoopTest {
+
+    @Test
+    public void shouldTickAtFixedInterval() throws Exception {
+        final CountDownLatch ticks = new CountDownLatch(20);
+        GameLoop gameLoop = new GameLoop(TimeUnit.MILLISECONDS.toNanos(1), new GameLoop.OnTickListener() {
+
+            @Override
+            public void onTick() {
+                ticks.countDown();
+            }
+        });
+
+        long start = System.nanoTime();
+        gameLoop.start();
+        assertThat(gameLoop.isRunning()).isTrue();
+        assertThat(ticks.await(5, TimeUnit.SECONDS)).isTrue();
+        gameLoop.stop();
+
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(20));
+        assertThat(gameLoop.isRunning()).isFalse();
+        assertThat(gameLoop.getMaxLatenessNanos()).isGreaterThanOrEqualTo(gameLoop.getLastLatenessNanos());
+    }
+
+    @Test
+    public void shouldChangeIntervalWithoutRestarting() throws Exception {
+        final AtomicInteger ticks = new AtomicInteger();
+        final CountDownLatch fastTicks = new CountDownLatch(1);
+        GameLoop gameLoop = new GameLoop(TimeUnit.HOURS.toNanos(1), new GameLoop.OnTickListener() {
+
+            @Override
+            public void onTick() {
+                ticks.incrementAndGet();
+                fastTicks.countDown();
+            }
+        });
+
+        gameLoop.start();
+        Thread.sleep(20);
+        assertThat(ticks.get()).isZero();
+
+        gameLoop.setTickInterval(TimeUnit.MILLISECONDS.toNanos(1));
+        assertThat(fastTicks.await(5, TimeUnit.SECONDS)).isTrue();
+        gameLoop.stop();
+    }
+
+    @Test
+    public void shouldNotTickWhilePaused() throws Exception {
+        final AtomicInteger ticks = new AtomicInteger();
+        final CountDownLatch resumedTick = new CountDownLatch(1);
+        GameLoop gameLoop = new GameLoop(TimeUnit.MILLISECONDS.toNanos(200), new GameLoop.OnTickListener() {
+
+            @Override
+            public void onTick() {
+                ticks.incrementAndGet();
+                resumedTick.countDown();
+            }
+        });
+
+        gameLoop.start();
+        gameLoop.pause();
+        assertThat(gameLoop.isPaused()).isTrue();
+        // Sin la pausa ya habrían tocado dos pasos
+        Thread.sleep(500);
+        assertThat(ticks.get()).isZero();
+
+        gameLoop.resume();
+        assertThat(resumedTick.await(5, TimeUnit.SECONDS)).isTrue();
+        // El tiempo en pausa no cuenta, así que no hay pasos para ponerse al corriente y el
+        // siguiente toca hasta un intervalo después
+        Thread.sleep(100);
+        gameLoop.stop();
+        assertThat(ticks.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldWakeBeforeNextTick() throws Exception {
+        final AtomicInteger ticks = new AtomicInteger();
+        final CountDownLatch woken = new CountDownLatch(1);
+        GameLoop gameLoop = new GameLoop(TimeUnit.HOURS.toNanos(1), new GameLoop.OnTickListener() {
+
+            @Override
+            public void onTick() {
+                ticks.incrementAndGet();
+            }
+        });
+        gameLoop.setOnWakeListener(new GameLoop.OnWakeListener() {
+
+            @Override
+            public void onWake() {
+                woken.countDown();
+            }
+        });
+
+        gameLoop.start();
+        gameLoop.wake();
+
+        assertThat(woken.await(5, TimeUnit.SECONDS)).isTrue();
+        gameLoop.stop();
+        assertThat(ticks.get()).isZero();
+    }
+
+    @Test
+    public void shouldWakeAtScheduledTime() throws Exception {
+        final CountDownLatch woken = new CountDownLatch(1);
+        final AtomicLong wakeTime = new AtomicLong();
+        GameLoop gameLoop = new GameLoop(TimeUnit.HOURS.toNanos(1), new GameLoop.OnTickListener() {
+
+            @Override
+            public void onTick() {
+            }
+        });
+        gameLoop.setOnWakeListener(new GameLoop.OnWakeListener() {
+
+            @Override
+            public void onWake() {
+                wakeTime.set(System.nanoTime());
+                woken.countDown();
+            }
+        });
+
+        gameLoop.start();
+        long scheduledTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50);
+        gameLoop.wakeAt(scheduledTime);
+
+        assertThat(woken.await(5, TimeUnit.SECONDS)).isTrue();
+        gameLoop.stop();
+        assertThat(wakeTime.get() - scheduledTime).isGreaterThanOrEqualTo(0L);
+    }
+
+    @Test
+    public void shouldNotBeCurrentThreadAfterStop() throws Exception {
+        final AtomicBoolean entered = new AtomicBoolean();
+        final AtomicBoolean currentWhileTicking = new AtomicBoolean();
+        final AtomicBoolean currentAfterStop = new AtomicBoolean(true);
+        final CountDownLatch ticking = new CountDownLatch(1);
+        final CountDownLatch stopped = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(1);
+        final GameLoop[] gameLoop = new GameLoop[1];
+        gameLoop[0] = new GameLoop(TimeUnit.MILLISECONDS.toNanos(1), new GameLoop.OnTickListener() {
+
+            @Override
+            public void onTick() {
+                // Solo el primer paso del primer hilo espera, los demás pasos de cualquier hilo
+                // no hacen nada
+                if (!entered.compareAndSet(false, true)) return;
+                currentWhileTicking.set(gameLoop[0].isCurrentThread());
+                ticking.countDown();
+                try {
+                    stopped.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                currentAfterStop.set(gameLoop[0].isCurrentThread());
+                finished.countDown();
+            }
+        });
+
+        gameLoop[0].start();
+        assertThat(ticking.await(5, TimeUnit.SECONDS)).isTrue();
+        // El paso en curso sigue mientras ya corre otro hilo
+        gameLoop[0].stop();
+        gameLoop[0].start();
+        assertThat(gameLoop[0].isCurrentThread()).isFalse();
+        stopped.countDown();
+        assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue();
+        gameLoop[0].stop();
+
+        assertThat(currentWhileTicking.get()).isTrue();
+        assertThat(currentAfterStop.get()).isFalse();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class InputQueueTest {
+
+    @Test
+    public void shouldKeepCommandsInOrderUntilFull() throws Exception {
+        InputQueue inputQueue = new InputQueue(4);
+
+        assertThat(inputQueue.poll()).isEqualTo(InputQueue.NONE);
+        assertThat(inputQueue.offer(InputQueue.MOVE_LEFT, 0L)).isTrue();
+        assertThat(inputQueue.offer(InputQueue.ROTATE, 0L)).isTrue();
+        assertThat(inputQueue.offer(InputQueue.SOFT_DROP, 0L)).isTrue();
+        assertThat(inputQueue.offer(InputQueue.HARD_DROP, 0L)).isTrue();
+        assertThat(inputQueue.offer(InputQueue.MOVE_RIGHT, 0L)).isFalse();
+
+        assertThat(inputQueue.poll()).isEqualTo(InputQueue.MOVE_LEFT);
+        assertThat(inputQueue.offer(InputQueue.MOVE_RIGHT, 0L)).isTrue();
+        assertThat(inputQueue.poll()).isEqualTo(InputQueue.ROTATE);
+        assertThat(inputQueue.poll()).isEqualTo(InputQueue.SOFT_DROP);
+        assertThat(inputQueue.poll()).isEqualTo(InputQueue.HARD_DROP);
+        assertThat(inputQueue.poll()).isEqualTo(InputQueue.MOVE_RIGHT);
+        assertThat(inputQueue.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void shouldPassCommandsBetweenThreads() throws Exception {
+        final InputQueue inputQueue = new InputQueue(8);
+        final int commands = 100000;
+        Thread producer = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                for (int i = 0; i < commands; i++) {
+                    while (!inputQueue.offer(InputQueue.MOVE_LEFT + i % InputQueue.HARD_DROP, i)) Thread.yield();
+                }
+            }
+        });
+
+        producer.start();
+        for (int i = 0; i < commands; i++) {
+            int command;
+            while ((command = inputQueue.poll()) == InputQueue.NONE) Thread.yield();
+            assertThat(command).isEqualTo(InputQueue.MOVE_LEFT + i % InputQueue.HARD_DROP);
+            assertThat(inputQueue.getPolledEventTime()).isEqualTo(i);
+        }
+        producer.join();
+
+        assertThat(inputQueue.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void shouldCarryEventTimeWithEachCommand() throws Exception {
+        InputQueue inputQueue = new InputQueue(4);
+        inputQueue.offer(InputQueue.MOVE_LEFT, 100L);
+        inputQueue.offer(InputQueue.SOFT_DROP, 116L);
+
+        assertThat(inputQueue.poll()).isEqualTo(InputQueue.MOVE_LEFT);
+        assertThat(inputQueue.getPolledEventTime()).isEqualTo(100L);
+        assertThat(inputQueue.poll()).isEqualTo(InputQueue.SOFT_DROP);
+        assertThat(inputQueue.getPolledEventTime()).isEqualTo(116L);
+    }
+
+    @Test
+    public void shouldDropPendingCommandsOnClear() throws Exception {
+        InputQueue inputQueue = new InputQueue(4);
+        inputQueue.offer(InputQueue.MOVE_LEFT, 0L);
+        inputQueue.offer(InputQueue.HARD_DROP, 0L);
+
+        inputQueue.clear();
+        assertThat(inputQueue.isEmpty()).isTrue();
+        assertThat(inputQueue.poll()).isEqualTo(InputQueue.NONE);
+
+        assertThat(inputQueue.offer(InputQueue.ROTATE, 0L)).isTrue();
+        assertThat(inputQueue.poll()).isEqualTo(InputQueue.ROTATE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectCapacityNotPowerOfTwo() throws Exception {
+        new InputQueue(6);
+    }
+}
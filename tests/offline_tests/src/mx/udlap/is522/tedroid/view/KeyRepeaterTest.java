@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import android.view.KeyEvent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class KeyRepeaterTest {
+
+    private static final long DELAY = 100L;
+    private static final long REPEAT = 10L;
+
+    @Test
+    public void shouldRepeatSideAfterDelay() throws Exception {
+        final List<Tetromino.Direction> directions = new ArrayList<Tetromino.Direction>();
+        KeyRepeater keyRepeater = new KeyRepeater(DELAY, REPEAT, new KeyRepeater.OnRepeatListener() {
+
+            @Override
+            public boolean onRepeat(Tetromino.Direction direction) {
+                directions.add(direction);
+                return true;
+            }
+        });
+
+        keyRepeater.press(Tetromino.Direction.LEFT, 0L);
+        keyRepeater.update(DELAY - 1);
+        assertThat(directions).containsExactly(Tetromino.Direction.LEFT);
+        assertThat(keyRepeater.getNextRepeatTime()).isEqualTo(DELAY);
+
+        keyRepeater.update(DELAY + 2 * REPEAT);
+        assertThat(directions).hasSize(4);
+
+        directions.clear();
+        keyRepeater.press(Tetromino.Direction.RIGHT, 200L);
+        keyRepeater.update(200L + DELAY);
+        assertThat(directions).containsExactly(Tetromino.Direction.RIGHT, Tetromino.Direction.RIGHT);
+
+        directions.clear();
+        keyRepeater.release(Tetromino.Direction.RIGHT, 400L);
+        keyRepeater.update(400L + DELAY);
+        assertThat(directions).containsExactly(Tetromino.Direction.LEFT);
+
+        keyRepeater.release(Tetromino.Direction.LEFT, 600L);
+        assertThat(keyRepeater.isRepeating()).isFalse();
+    }
+
+    @Test
+    public void shouldStopSoftDropWhenListenerDeclines() throws Exception {
+        final List<Tetromino.Direction> directions = new ArrayList<Tetromino.Direction>();
+        KeyRepeater keyRepeater = new KeyRepeater(DELAY, REPEAT, new KeyRepeater.OnRepeatListener() {
+
+            @Override
+            public boolean onRepeat(Tetromino.Direction direction) {
+                directions.add(direction);
+                return directions.size() < 3;
+            }
+        });
+
+        keyRepeater.press(Tetromino.Direction.DOWN, 0L);
+        assertThat(keyRepeater.getNextRepeatTime()).isEqualTo(REPEAT);
+        keyRepeater.update(5 * REPEAT);
+
+        assertThat(directions).containsExactly(Tetromino.Direction.DOWN, Tetromino.Direction.DOWN, Tetromino.Direction.DOWN);
+        assertThat(keyRepeater.isRepeating()).isFalse();
+    }
+
+    @Test
+    public void shouldMapKeysToCommands() throws Exception {
+        assertThat(KeyRepeater.commandForKey(KeyEvent.KEYCODE_DPAD_LEFT)).isEqualTo(InputQueue.MOVE_LEFT);
+        assertThat(KeyRepeater.commandForKey(KeyEvent.KEYCODE_BUTTON_A)).isEqualTo(InputQueue.ROTATE);
+        assertThat(KeyRepeater.commandForKey(KeyEvent.KEYCODE_ENTER)).isEqualTo(InputQueue.NONE);
+        assertThat(KeyRepeater.directionOf(InputQueue.SOFT_DROP)).isEqualTo(Tetromino.Direction.DOWN);
+        assertThat(KeyRepeater.directionOf(InputQueue.HARD_DROP)).isNull();
+    }
+
+    @Test
+    public void shouldMapHatValuesToCommands() throws Exception {
+        assertThat(KeyRepeater.commandForHat(-1, InputQueue.MOVE_LEFT, InputQueue.MOVE_RIGHT)).isEqualTo(InputQueue.MOVE_LEFT);
+        assertThat(KeyRepeater.commandForHat(1, InputQueue.MOVE_LEFT, InputQueue.MOVE_RIGHT)).isEqualTo(InputQueue.MOVE_RIGHT);
+        assertThat(KeyRepeater.commandForHat(0, InputQueue.ROTATE, InputQueue.SOFT_DROP)).isEqualTo(InputQueue.NONE);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import java.util.LinkedList;
+import java.util.Random;
+
+public class RandomizerTest {
+
+    @Test
+    public void shouldNotRepeatMoreThan2EqualShapes() throws Exception {
+        final int o = TetrominoShape.O.ordinal();
+        final int t = TetrominoShape.T.ordinal();
+        final int j = TetrominoShape.J.ordinal();
+        final LinkedList<Integer> randomQueue = new LinkedList<>();
+        randomQueue.add(o);
+        randomQueue.add(o);
+        randomQueue.add(o);
+        randomQueue.add(o);
+        randomQueue.add(t);
+        randomQueue.add(t);
+        randomQueue.add(j);
+        Randomizer randomizer = new Randomizer.NoTriple(TetrominoShape.values().length, new Random() {
+            @Override
+            public int nextInt(int n) {
+                return randomQueue.poll();
+            }
+        });
+
+        assertThat(randomizer.next()).isEqualTo(o);
+        assertThat(randomizer.next()).isEqualTo(o);
+        assertThat(randomizer.next()).isEqualTo(t);
+        assertThat(randomizer.next()).isEqualTo(t);
+        assertThat(randomizer.next()).isEqualTo(j);
+    }
+
+    @Test
+    public void shouldDealEveryShapeOncePerBag() throws Exception {
+        int shapes = TetrominoShape.values().length;
+        Randomizer randomizer = new Randomizer.Bag(shapes, 42L);
+
+        for (int bag = 0; bag < 3; bag++) {
+            boolean[] dealt = new boolean[shapes];
+            for (int i = 0; i < shapes; i++) {
+                int shape = randomizer.next();
+                assertThat(dealt[shape]).isFalse();
+                dealt[shape] = true;
+            }
+        }
+    }
+
+    @Test
+    public void shouldRepeatSequenceWithSameSeed() throws Exception {
+        int shapes = TetrominoShape.values().length;
+        Randomizer[] randomizers = { new Randomizer.Pure(shapes, 7L), new Randomizer.NoTriple(shapes, 7L), new Randomizer.Bag(shapes, 7L) };
+        Randomizer[] replays = { new Randomizer.Pure(shapes, 7L), new Randomizer.NoTriple(shapes, 7L), new Randomizer.Bag(shapes, 7L) };
+
+        for (int r = 0; r < randomizers.length; r++) {
+            for (int i = 0; i < 100; i++) {
+                int shape = randomizers[r].next();
+                assertThat(shape).isGreaterThanOrEqualTo(0).isLessThan(shapes);
+                assertThat(replays[r].next()).isEqualTo(shape);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class ShapeRotationsTest {
+
+    @Test
+    public void shouldPrecomputeEveryRotation() throws Exception {
+        for (TetrominoShape shape : TetrominoShape.values()) {
+            ShapeRotations rotations = shape.getRotations();
+            assertThat(rotations.size()).isEqualTo(shape.hasRotation() ? 4 : 1);
+            assertThat(rotations.getShapeMatrix(0)).isEqualTo(shape.getShapeMatrix());
+            for (int rotation = 0; rotation < rotations.size(); rotation++) {
+                assertThat(rotations.getShapeRowMasks(rotation)).isEqualTo(Board.rowMasksOf(rotations.getShapeMatrix(rotation)));
+            }
+        }
+    }
+
+    @Test
+    public void shouldCycleRotations() throws Exception {
+        ShapeRotations rotations = TetrominoShape.J.getRotations();
+        int rotation = 0;
+        for (int i = 0; i < rotations.size(); i++) rotation = rotations.next(rotation);
+
+        assertThat(rotation).isZero();
+        assertThat(rotations.getColumns(1)).isEqualTo(2);
+        assertThat(TetrominoShape.O.getRotations().next(0)).isZero();
+    }
+}
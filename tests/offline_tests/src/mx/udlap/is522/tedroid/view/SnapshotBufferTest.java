@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import mx.udlap.is522.tedroid.R;
+
+public class SnapshotBufferTest {
+
+    @Test
+    public void shouldKeepPublishedSnapshotApartFromTheGame() throws Exception {
+        GameEngine gameEngine = new GameEngine();
+        gameEngine.setRandomizer(new Randomizer.Bag(TetrominoShape.values().length, 1L));
+        gameEngine.start();
+        SnapshotBuffer snapshotBuffer = new SnapshotBuffer(GameEngine.DEFAULT_ROWS, GameEngine.DEFAULT_COLUMNS);
+
+        gameEngine.capture(snapshotBuffer.getBack());
+        snapshotBuffer.publish();
+        int row = gameEngine.getCurrentTetromino().getPosition().getBoardMatrixRow();
+        int ghostRow = gameEngine.getCurrentTetromino().getGhostRow();
+        gameEngine.hardDrop();
+        GameSnapshot snapshot = snapshotBuffer.pollLatest();
+
+        assertThat(snapshot.hasTetromino()).isTrue();
+        assertThat(snapshot.getTetrominoRow()).isEqualTo(row);
+        assertThat(snapshot.getGhostRow()).isEqualTo(ghostRow);
+        assertThat(snapshot.getBoard()).isEqualTo(new Board(GameEngine.DEFAULT_ROWS, GameEngine.DEFAULT_COLUMNS));
+        assertThat(snapshot.getBoard()).isNotEqualTo(gameEngine.getBoard());
+        assertThat(snapshotBuffer.pollLatest()).isNull();
+    }
+
+    @Test
+    public void shouldDrawOnlyTheLatestSnapshot() throws Exception {
+        SnapshotBuffer snapshotBuffer = new SnapshotBuffer(4, 4);
+        Board board = new Board(4, 4);
+
+        board.set(3, 0, ColorIndex.indexOf(R.color.tetromino_i));
+        snapshotBuffer.getBack().capture(board, null);
+        snapshotBuffer.publish();
+        board.set(3, 1, ColorIndex.indexOf(R.color.tetromino_i));
+        snapshotBuffer.getBack().capture(board, null);
+        snapshotBuffer.publish();
+        GameSnapshot latest = snapshotBuffer.pollLatest();
+
+        assertThat(latest).isNotNull();
+        assertThat(latest.hasTetromino()).isFalse();
+        assertThat(latest.getBoard()).isEqualTo(board);
+        assertThat(latest).isNotSameAs(snapshotBuffer.getBack());
+        assertThat(snapshotBuffer.pollLatest()).isNull();
+    }
+
+    @Test
+    public void shouldKeepChangesOfSkippedSnapshots() throws Exception {
+        SnapshotBuffer snapshotBuffer = new SnapshotBuffer(4, 4);
+        Board board = new Board(4, 4);
+        board.clearDirtyRows();
+
+        board.set(3, 0, ColorIndex.indexOf(R.color.tetromino_i));
+        snapshotBuffer.getBack().capture(board, null);
+        snapshotBuffer.getBack().setFullFrame(true);
+        snapshotBuffer.publish();
+        board.clearDirtyRows();
+        board.set(1, 1, ColorIndex.indexOf(R.color.tetromino_i));
+        snapshotBuffer.getBack().capture(board, null);
+        snapshotBuffer.publish();
+        GameSnapshot latest = snapshotBuffer.pollLatest();
+
+        assertThat(latest.isFullFrame()).isTrue();
+        assertThat(latest.getDirtyTopRow()).isEqualTo(1);
+        assertThat(latest.getDirtyBottomRow()).isEqualTo(3);
+
+        board.clearDirtyRows();
+        snapshotBuffer.getBack().capture(board, null);
+        snapshotBuffer.publish();
+        latest = snapshotBuffer.pollLatest();
+
+        assertThat(latest.isFullFrame()).isFalse();
+        assertThat(latest.hasDirtyRows()).isFalse();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import mx.udlap.is522.tedroid.R;
+
+public class SpecialGameEngineTest {
+
+    @Test
+    public void shouldInvertBoardBeforeRotatedEvent() throws Exception {
+        final SpecialGameEngine gameEngine = startWith(SpecialTetrominoShape.SPECIAL_S);
+        final boolean[] invertedOnRotated = new boolean[1];
+        gameEngine.setOnGameEventListener(new GameEngine.SimpleOnGameEventListener() {
+            @Override
+            public void onTetrominoRotated() {
+                invertedOnRotated[0] = gameEngine.isBoardMatrixInverted();
+            }
+        });
+
+        assertThat(gameEngine.rotate()).isTrue();
+        assertThat(invertedOnRotated[0]).isTrue();
+    }
+
+    @Test
+    public void shouldHideBoardBeforeRotatedEvent() throws Exception {
+        final SpecialGameEngine gameEngine = startWith(SpecialTetrominoShape.SPECIAL_I);
+        final boolean[] invisibleOnRotated = new boolean[1];
+        gameEngine.setOnGameEventListener(new GameEngine.SimpleOnGameEventListener() {
+            @Override
+            public void onTetrominoRotated() {
+                invisibleOnRotated[0] = gameEngine.isBoardMatrixInvisible();
+            }
+        });
+
+        assertThat(gameEngine.rotate()).isTrue();
+        assertThat(invisibleOnRotated[0]).isTrue();
+    }
+
+    @Test
+    public void shouldApplyGravityBeforeRotatedEvent() throws Exception {
+        final SpecialGameEngine gameEngine = startWith(SpecialTetrominoShape.SPECIAL_L);
+        final Board board = gameEngine.getBoard();
+        board.set(5, 0, ColorIndex.indexOf(R.color.tetromino_i));
+        board.clearDirtyRows();
+        final boolean[] fallenOnRotated = new boolean[2];
+        gameEngine.setOnGameEventListener(new GameEngine.SimpleOnGameEventListener() {
+            @Override
+            public void onTetrominoRotated() {
+                fallenOnRotated[0] = board.isEmpty(5, 0) && !board.isEmpty(board.getRows() - 1, 0);
+                fallenOnRotated[1] = board.hasDirtyRows();
+            }
+        });
+
+        assertThat(gameEngine.rotate()).isTrue();
+        assertThat(fallenOnRotated).isEqualTo(new boolean[] { true, true });
+    }
+
+    private SpecialGameEngine startWith(final SpecialTetrominoShape shape) {
+        SpecialGameEngine gameEngine = new SpecialGameEngine();
+        gameEngine.setRandomizer(new Randomizer(SpecialTetrominoShape.values().length, 0L) {
+            @Override
+            public int next() {
+                return shape.ordinal();
+            }
+        });
+        gameEngine.start();
+        return gameEngine;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 Tedroid developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mx.udlap.is522.tedroid.view;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SwipeTrackerTest {
+
+    @Test
+    public void shouldMoveOneCellPerColumnAndRowSwiped() throws Exception {
+        final List<Tetromino.Direction> directions = new ArrayList<Tetromino.Direction>();
+        SwipeTracker swipeTracker = new SwipeTracker(new SwipeTracker.OnSwipeListener() {
+
+            @Override
+            public boolean onSwipe(Tetromino.Direction direction, long eventTime) {
+                directions.add(direction);
+                return true;
+            }
+        });
+        swipeTracker.setCellSize(10, 10);
+
+        swipeTracker.down(0, 0);
+        swipeTracker.track(35, 0, 0);
+        assertThat(directions).containsExactly(Tetromino.Direction.RIGHT, Tetromino.Direction.RIGHT, Tetromino.Direction.RIGHT);
+
+        directions.clear();
+        swipeTracker.track(5, 0, 0);
+        assertThat(directions).containsExactly(Tetromino.Direction.LEFT, Tetromino.Direction.LEFT);
+
+        directions.clear();
+        swipeTracker.track(5, -20, 0);
+        swipeTracker.track(5, 5, 0);
+        assertThat(directions).containsExactly(Tetromino.Direction.DOWN, Tetromino.Direction.DOWN);
+    }
+
+    @Test
+    public void shouldStopTrackingWhenListenerDeclines() throws Exception {
+        final List<Tetromino.Direction> directions = new ArrayList<Tetromino.Direction>();
+        SwipeTracker swipeTracker = new SwipeTracker(new SwipeTracker.OnSwipeListener() {
+
+            @Override
+            public boolean onSwipe(Tetromino.Direction direction, long eventTime) {
+                directions.add(direction);
+                return false;
+            }
+        });
+        swipeTracker.setCellSize(10, 10);
+
+        swipeTracker.down(0, 0);
+        swipeTracker.track(0, 50, 0);
+        swipeTracker.track(0, 90, 0);
+        assertThat(directions).containsExactly(Tetromino.Direction.DOWN);
+
+        swipeTracker.down(0, 0);
+        swipeTracker.track(10, 0, 0);
+        assertThat(directions).containsExactly(Tetromino.Direction.DOWN, Tetromino.Direction.RIGHT);
+    }
+
+    @Test
+    public void shouldMoveOnlyAlongTheDominantAxis() throws Exception {
+        final List<Tetromino.Direction> directions = new ArrayList<Tetromino.Direction>();
+        final List<Long> eventTimes = new ArrayList<Long>();
+        SwipeTracker swipeTracker = new SwipeTracker(new SwipeTracker.OnSwipeListener() {
+
+            @Override
+            public boolean onSwipe(Tetromino.Direction direction, long eventTime) {
+                directions.add(direction);
+                eventTimes.add(eventTime);
+                return true;
+            }
+        });
+        swipeTracker.setCellSize(10, 10);
+
+        swipeTracker.down(0, 0);
+        swipeTracker.track(20, 25, 8L);
+        assertThat(directions).containsExactly(Tetromino.Direction.DOWN, Tetromino.Direction.DOWN);
+        assertThat(eventTimes).containsExactly(8L, 8L);
+
+        directions.clear();
+        swipeTracker.track(35, 32, 16L);
+        assertThat(directions).containsExactly(Tetromino.Direction.RIGHT);
+        assertThat(eventTimes).containsExactly(8L, 8L, 16L);
+    }
+}
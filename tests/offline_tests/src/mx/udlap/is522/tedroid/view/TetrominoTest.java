@@ -17,40 +17,16 @@ package mx.udlap.is522.tedroid.view;
 
 import static org.fest.assertions.api.Assertions.assertThat;
 
-import android.app.Activity;
-import android.content.SharedPreferences;
-
-import org.junit.Before;
 import org.junit.Test;
-import org.junit.runner.RunWith;
-
-import org.robolectric.Robolectric;
-import org.robolectric.RobolectricTestRunner;
-import org.robolectric.shadows.ShadowPreferenceManager;
 
 import mx.udlap.is522.tedroid.R;
 
-@RunWith(RobolectricTestRunner.class)
 public class TetrominoTest {
 
-    private Activity dummyActivity;
-
-    @Before
-    public void setUp() throws Exception {
-        dummyActivity = Robolectric.buildActivity(Activity.class).create().get();
-        assertThat(dummyActivity).isNotNull();
-        
-        SharedPreferences sharedPreferences = ShadowPreferenceManager.getDefaultSharedPreferences(Robolectric.application.getApplicationContext());
-        sharedPreferences
-            .edit()
-            .putBoolean(Robolectric.application.getString(R.string.sounds_switch_key), false)
-            .commit();
-    }
-
     @Test
     public void shouldBuildWithDefaultShape() throws Exception {
-        GameBoardView gameBoardView = new GameBoardView(dummyActivity);
-        Tetromino tetrominoZ = new Tetromino.Builder(gameBoardView)
+        Board board = new Board(GameEngine.DEFAULT_ROWS, GameEngine.DEFAULT_COLUMNS);
+        Tetromino tetrominoZ = new Tetromino.Builder(board)
             .use(TetrominoShape.Z)
             .build();
 
@@ -65,8 +41,8 @@ public class TetrominoTest {
                                 { android.R.color.transparent, android.R.color.black, android.R.color.black }, 
                                 { android.R.color.transparent, android.R.color.black, android.R.color.transparent } };
 
-        GameBoardView gameBoardView = new GameBoardView(dummyActivity);
-        Tetromino newTetromino = new Tetromino.Builder(gameBoardView)
+        Board board = new Board(GameEngine.DEFAULT_ROWS, GameEngine.DEFAULT_COLUMNS);
+        Tetromino newTetromino = new Tetromino.Builder(board)
             .setShape(shape)
             .hasRotation()
             .build();
@@ -89,8 +65,8 @@ public class TetrominoTest {
                                         { R.color.tetromino_t, R.color.tetromino_t, }, 
                                         { R.color.tetromino_t, android.R.color.transparent, } };
 
-        GameBoardView gameBoardView = new GameBoardView(dummyActivity);
-        Tetromino tetrominoT = new Tetromino.Builder(gameBoardView)
+        Board board = new Board(GameEngine.DEFAULT_ROWS, GameEngine.DEFAULT_COLUMNS);
+        Tetromino tetrominoT = new Tetromino.Builder(board)
             .use(TetrominoShape.T)
             .build();
 
@@ -108,8 +84,8 @@ public class TetrominoTest {
 
     @Test
     public void shouldMove() throws Exception {
-        GameBoardView gameBoardView = new GameBoardView(dummyActivity);
-        Tetromino tetrominoO = new Tetromino.Builder(gameBoardView)
+        Board board = new Board(GameEngine.DEFAULT_ROWS, GameEngine.DEFAULT_COLUMNS);
+        Tetromino tetrominoO = new Tetromino.Builder(board)
             .use(TetrominoShape.O)
             .build();
 
@@ -126,15 +102,10 @@ public class TetrominoTest {
 
     @Test
     public void shouldNotMove() throws Exception {
-        GameBoardView gameBoardView = new GameBoardView(dummyActivity) {
-            @Override
-            public int[][] getBoardMatrix() {
-                return new int[][] { {android.R.color.transparent, android.R.color.transparent},
-                                     {android.R.color.transparent, android.R.color.transparent} };
-            }
-        };
-
-        Tetromino tetrominoO = new Tetromino.Builder(gameBoardView)
+        Board board = new Board(new int[][] { {android.R.color.transparent, android.R.color.transparent},
+                                              {android.R.color.transparent, android.R.color.transparent} });
+
+        Tetromino tetrominoO = new Tetromino.Builder(board)
             .use(TetrominoShape.O)
             .build();
 
@@ -142,17 +113,12 @@ public class TetrominoTest {
         assertThat(tetrominoO.moveTo(Tetromino.Direction.LEFT)).isFalse();
         assertThat(tetrominoO.moveTo(Tetromino.Direction.DOWN)).isFalse();
 
-        gameBoardView = new GameBoardView(dummyActivity) {
-            @Override
-            public int[][] getBoardMatrix() {
-                return new int[][] { {android.R.color.transparent, android.R.color.transparent, android.R.color.transparent, android.R.color.transparent, android.R.color.transparent},
-                                     {android.R.color.transparent, android.R.color.transparent, android.R.color.transparent, android.R.color.transparent, android.R.color.transparent},
-                                     {android.R.color.transparent, android.R.color.black,       android.R.color.black,       android.R.color.transparent, android.R.color.transparent},
-                                     {android.R.color.black,       android.R.color.black,       android.R.color.transparent, android.R.color.transparent, android.R.color.black} };
-            }
-        };
-
-        tetrominoO = new Tetromino.Builder(gameBoardView)
+        board = new Board(new int[][] { {android.R.color.transparent, android.R.color.transparent, android.R.color.transparent, android.R.color.transparent, android.R.color.transparent},
+                                        {android.R.color.transparent, android.R.color.transparent, android.R.color.transparent, android.R.color.transparent, android.R.color.transparent},
+                                        {android.R.color.transparent, android.R.color.black,       android.R.color.black,       android.R.color.transparent, android.R.color.transparent},
+                                        {android.R.color.black,       android.R.color.black,       android.R.color.transparent, android.R.color.transparent, android.R.color.black} });
+
+        tetrominoO = new Tetromino.Builder(board)
             .use(TetrominoShape.O)
             .build();
 
@@ -166,36 +132,62 @@ public class TetrominoTest {
 
     @Test
     public void shouldNotRotate() throws Exception {
-        GameBoardView gameBoardView = new GameBoardView(dummyActivity) {
-            @Override
-            public int[][] getBoardMatrix() {
-                return new int[][] { {android.R.color.transparent, android.R.color.transparent, android.R.color.transparent},
-                                     {android.R.color.transparent, android.R.color.transparent, android.R.color.transparent},
-                                     {android.R.color.black,       android.R.color.black,       android.R.color.black},
-                                     {android.R.color.black,       android.R.color.transparent, android.R.color.black} };
-            }
-        };
-
-        Tetromino tetrominoL = new Tetromino.Builder(gameBoardView)
+        Board board = new Board(new int[][] { {android.R.color.transparent, android.R.color.transparent, android.R.color.transparent},
+                                              {android.R.color.transparent, android.R.color.transparent, android.R.color.transparent},
+                                              {android.R.color.black,       android.R.color.black,       android.R.color.black},
+                                              {android.R.color.black,       android.R.color.transparent, android.R.color.black} });
+
+        Tetromino tetrominoL = new Tetromino.Builder(board)
             .use(TetrominoShape.L)
             .build();
 
         assertThat(tetrominoL.rotate()).isFalse();
 
-        gameBoardView = new GameBoardView(dummyActivity) {
-            @Override
-            public int[][] getBoardMatrix() {
-                return new int[][] { {android.R.color.transparent, android.R.color.transparent, android.R.color.transparent},
-                                     {android.R.color.transparent, android.R.color.transparent, android.R.color.transparent},
-                                     {android.R.color.transparent, android.R.color.transparent, android.R.color.transparent}, };
-            }
-        };
+        board = new Board(new int[][] { {android.R.color.transparent, android.R.color.transparent, android.R.color.transparent},
+                                        {android.R.color.transparent, android.R.color.transparent, android.R.color.transparent},
+                                        {android.R.color.transparent, android.R.color.transparent, android.R.color.transparent}, });
 
-        tetrominoL = new Tetromino.Builder(gameBoardView)
+        tetrominoL = new Tetromino.Builder(board)
             .use(TetrominoShape.L)
             .build();
 
         assertThat(tetrominoL.moveTo(Tetromino.Direction.DOWN)).isTrue();
         assertThat(tetrominoL.rotate()).isFalse();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldDropUsingColumnTops() throws Exception {
+        Board board = new Board(6, 4);
+        board.set(5, 0, ColorIndex.indexOf(R.color.tetromino_i));
+        board.set(3, 2, ColorIndex.indexOf(R.color.tetromino_i));
+        Tetromino tetrominoT = new Tetromino.Builder(board)
+            .use(TetrominoShape.T)
+            .build();
+
+        assertThat(board.getColumnTop(0)).isEqualTo(5);
+        assertThat(board.getColumnTop(3)).isEqualTo(6);
+        assertThat(tetrominoT.getGhostRow()).isEqualTo(2);
+        assertThat(tetrominoT.drop()).isEqualTo(2);
+        assertThat(tetrominoT.moveTo(Tetromino.Direction.DOWN)).isFalse();
+    }
+
+    @Test
+    public void shouldDropUnderOverhang() throws Exception {
+        Board board = new Board(6, 4);
+        board.set(2, 0, ColorIndex.indexOf(R.color.tetromino_i));
+        board.set(2, 1, ColorIndex.indexOf(R.color.tetromino_i));
+        Tetromino tetrominoO = new Tetromino.Builder(board)
+            .use(TetrominoShape.O)
+            .build();
+
+        assertThat(tetrominoO.moveTo(Tetromino.Direction.RIGHT)).isTrue();
+        assertThat(tetrominoO.moveTo(Tetromino.Direction.RIGHT)).isTrue();
+        for (int i = 0; i < 3; i++) assertThat(tetrominoO.moveTo(Tetromino.Direction.DOWN)).isTrue();
+        assertThat(tetrominoO.moveTo(Tetromino.Direction.LEFT)).isTrue();
+        assertThat(tetrominoO.moveTo(Tetromino.Direction.LEFT)).isTrue();
+
+        assertThat(tetrominoO.getDropDistance()).isEqualTo(1);
+        assertThat(tetrominoO.drop()).isEqualTo(1);
+        assertThat(tetrominoO.getPosition().getBoardMatrixRow()).isEqualTo(4);
+    }
+}